@@ -0,0 +1,111 @@
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.utilities.FormatChecker;
+
+/**
+ * Batch version of {@code ABCDGuesser1}: approximates every target mu listed
+ * in a file, one per line, with the de Jager formula over the same four
+ * personal constants. The estimates of all combinations of exponents are
+ * computed and sorted once, and each target is then answered by binary
+ * search.
+ *
+ * @author Ryan McKinley
+ */
+public final class ABCDBatch {
+
+    /**
+     * Number of personal constants.
+     */
+    private static final int CONSTANTS = 4;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ABCDBatch() {
+    }
+
+    /**
+     * Reads the targets from {@code file}, one per line, reporting and
+     * skipping lines that are not positive numbers.
+     *
+     * @param file
+     *            the input file
+     * @param out
+     *            the output stream
+     * @return the targets, in the order of the file
+     */
+    private static double[] readTargets(SimpleReader file, SimpleWriter out) {
+        final int initialCapacity = 16;
+        double[] targets = new double[initialCapacity];
+        int count = 0;
+        int lineNumber = 0;
+        while (!file.atEOS()) {
+            String line = file.nextLine().trim();
+            lineNumber++;
+            if (line.length() > 0) {
+                double mu = 0;
+                if (FormatChecker.canParseDouble(line)) {
+                    mu = Double.parseDouble(line);
+                }
+                if (mu > 0) {
+                    if (count == targets.length) {
+                        double[] larger = new double[2 * targets.length];
+                        System.arraycopy(targets, 0, larger, 0, count);
+                        targets = larger;
+                    }
+                    targets[count] = mu;
+                    count++;
+                } else {
+                    out.println("Skipping line " + lineNumber + ": \"" + line
+                            + "\" is not a positive number");
+                }
+            }
+        }
+        double[] result = new double[count];
+        System.arraycopy(targets, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleReader in = new SimpleReader1L();
+        SimpleWriter out = new SimpleWriter1L();
+
+        double[] personal = new double[CONSTANTS];
+        for (int i = 0; i < CONSTANTS; i++) {
+            personal[i] = ABCDGuesser1.getPositiveDoubleNotOne(in, out);
+        }
+        out.print("Input file (one target per line): ");
+        String inputFileName = in.nextLine();
+        SimpleReader file = new SimpleReader1L(inputFileName);
+        double[] targets = readTargets(file, out);
+        file.close();
+
+        ABCDSearch.Result[] results = new ABCDSearch(personal)
+                .searchAll(targets);
+        final double percent = 100;
+        final double s = Math.pow(10, 2);
+        for (int t = 0; t < targets.length; t++) {
+            ABCDSearch.Result best = results[t];
+            double error = best.relativeError() * percent;
+            out.print("mu: " + targets[t]);
+            out.print(" estimate: " + best.estimate());
+            out.print(" percent error: " + Math.round(error * s) / s);
+            for (int i = 0; i < CONSTANTS; i++) {
+                out.print(" exponent " + (i + 1) + ": " + best.exponent(i));
+            }
+            out.println();
+        }
+
+        in.close();
+        out.close();
+    }
+
+}
@@ -57,7 +57,7 @@ public final class ABCDGuesser1 {
      *            the output stream
      * @return a positive real number not equal to 1.0 entered by the user
      */
-    private static double getPositiveDoubleNotOne(SimpleReader in,
+    static double getPositiveDoubleNotOne(SimpleReader in,
             SimpleWriter out) {
         boolean statement = false;
         double n = -4;
@@ -99,38 +99,15 @@ public final class ABCDGuesser1 {
         double[] Exponents = { -5.0, -4.0, -3.0, -2.0, -1.0, -1.0 / 2, -1.0 / 3,
                 -1.0 / 4, 0.0, 1.0 / 4, 1.0 / 3, 1.0 / 2, 1.0, 2.0, 3.0, 4.0,
                 5.0 };
-        double E1 = 0, E2 = 0, E3 = 0, E4 = 0;
-        int w = 0, x = 0, y = 0, z = 0;
-        double diff = Math.pow(personal[0], Exponents[0])
-                * Math.pow(personal[1], Exponents[0])
-                * Math.pow(personal[2], Exponents[0])
-                * Math.pow(personal[3], Exponents[0]) - Mu;
-        while (z <= 16) {
-            while (y <= 16) {
-                while (x <= 16) {
-                    while (w <= 16) {
-                        double est = Math.pow(personal[0], Exponents[w])
-                                * Math.pow(personal[1], Exponents[x])
-                                * Math.pow(personal[2], Exponents[y])
-                                * Math.pow(personal[3], Exponents[z]) - Mu;
-                        if (Math.abs(est) < Math.abs(diff)) {
-                            diff = est;
-                            E1 = Exponents[w];
-                            E2 = Exponents[x];
-                            E3 = Exponents[y];
-                            E4 = Exponents[z];
-                        }
-                        w++;
-                    }
-                    x++;
-                    w = 0;
-                }
-                y++;
-                x = 0;
-            }
-            z++;
-            y = 0;
-        }
+        /*
+         * The search itself is done by ABCDSearch, which tabulates the 4 x 17
+         * powers once instead of calling Math.pow in the loop
+         */
+        ABCDSearch.Result best = new ABCDSearch(personal, Exponents)
+                .search(Mu);
+        double E1 = best.exponent(0), E2 = best.exponent(1),
+                E3 = best.exponent(2), E4 = best.exponent(3);
+        double diff = best.estimate() - Mu;
         double error = (diff / Mu) * 100;
         double s = Math.pow(10, 2);
         double PeError = Math.round(error * s) / s;
@@ -0,0 +1,1311 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Search engine for the de Jager formula: given a target mu and constants
+ * c0, c1, ..., finds exponents e0, e1, ... from an exponent set that make
+ * {@code c0^e0 * c1^e1 * ...} as close as possible to mu.
+ *
+ * <p>
+ * Only N x |E| distinct powers exist for N constants, so they are computed
+ * once, by the constructor, instead of calling {@code Math.pow} N times per
+ * combination. Partial products are hoisted out of the inner loop as well:
+ * the constants are split into a left half (the first ceil(N / 2)) and a
+ * right half, the products of each half are tabulated once, and each
+ * combination costs one multiplication and one comparison. Combinations are
+ * visited in the order of {@code ABCDGuesser1} (e0 fastest) and only a
+ * strictly better one replaces the best so far, so among equally good
+ * combinations the first one wins. Products are rounded as
+ * {@code (c0^e0 * c1^e1 * ...) * (... * c(N-1)^e(N-1))}, so combinations that
+ * tie exactly in real arithmetic may be ranked differently than by the
+ * original loop.
+ * </p>
+ *
+ * <p>
+ * In {@link Mode#MEET_IN_THE_MIDDLE} the left products are sorted once, and
+ * for each right product r a binary search finds where {@code l * r}
+ * crosses mu: since the estimate only grows with l, the closest combinations
+ * for r sit right next to the crossing, so the search costs about
+ * |E|^(N / 2) x log(|E|^(N / 2)) instead of |E|^N. Equally close neighbours
+ * are scanned and the one earliest in visiting order is kept, so this mode
+ * returns exactly what the exhaustive search returns.
+ * </p>
+ *
+ * <p>
+ * The search may also run on a fork-join pool: the right products, i.e., the
+ * outermost dimensions, are split into ranges, each worker keeps the best of
+ * its own ranges, and those are merged at the end with the same tie rule, so
+ * the result is exactly that of the serial search. The main method compares
+ * the engine with the original loop, and serial with parallel search.
+ * </p>
+ *
+ * <p>
+ * {@link #searchAll(double[])} answers many targets at once: the estimates of
+ * all |E|^N combinations are computed and sorted once, and each target then
+ * costs a binary search and a scan of equally close neighbours, with the same
+ * results as {@link #search(double)}.
+ * </p>
+ *
+ * <p>
+ * {@link #searchTop(double, int)} returns the k best combinations instead of
+ * only the best. They are kept in a bounded max-heap on two primitive arrays
+ * with the worst of them on top, so a candidate costs one comparison against
+ * the top, and nothing is allocated per candidate.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class ABCDSearch {
+
+    /**
+     * Number of constants of {@code ABCDGuesser1}.
+     */
+    private static final int CONSTANTS = 4;
+
+    /**
+     * Largest number of products tabulated for one half of the constants.
+     */
+    private static final int MAX_TABLE = 1 << 24;
+
+    /**
+     * Largest number of combinations whose estimates a batch search sorts.
+     * Sorting takes 32 bytes per combination, 64 MB at this bound, and 16 of
+     * them stay allocated for later batches.
+     */
+    private static final int MAX_BATCH = 1 << 21;
+
+    /**
+     * Ranges of at most this many combinations are searched by one worker.
+     */
+    private static final long GRAIN = 1 << 16;
+
+    /**
+     * The exponent set of the de Jager formula.
+     */
+    private static final double[] DE_JAGER_EXPONENTS = { -5.0, -4.0, -3.0,
+            -2.0, -1.0, -1.0 / 2, -1.0 / 3, -1.0 / 4, 0.0, 1.0 / 4, 1.0 / 3,
+            1.0 / 2, 1.0, 2.0, 3.0, 4.0, 5.0 };
+
+    /**
+     * The best combination found by a search.
+     */
+    public static final class Result {
+
+        /**
+         * Index in the exponent set of the exponent of each constant.
+         */
+        private final int[] indices;
+
+        /**
+         * Exponent of each constant.
+         */
+        private final double[] exponents;
+
+        /**
+         * Value of the formula for these exponents.
+         */
+        private final double estimate;
+
+        /**
+         * The target.
+         */
+        private final double mu;
+
+        /**
+         * Constructor.
+         *
+         * @param indices
+         *            index of the exponent of each constant
+         * @param exponents
+         *            the exponent set
+         * @param estimate
+         *            value of the formula for these exponents
+         * @param mu
+         *            the target
+         */
+        Result(int[] indices, double[] exponents, double estimate, double mu) {
+            this.indices = indices;
+            this.exponents = new double[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                this.exponents[i] = exponents[indices[i]];
+            }
+            this.estimate = estimate;
+            this.mu = mu;
+        }
+
+        /**
+         * Returns the exponent of constant {@code i}.
+         *
+         * @param i
+         *            the constant
+         * @return its exponent
+         */
+        public double exponent(int i) {
+            return this.exponents[i];
+        }
+
+        /**
+         * Returns the index in the exponent set of the exponent of constant
+         * {@code i}.
+         *
+         * @param i
+         *            the constant
+         * @return the index of its exponent
+         */
+        public int exponentIndex(int i) {
+            return this.indices[i];
+        }
+
+        /**
+         * Returns the value of the formula for the exponents found.
+         *
+         * @return the estimate of mu
+         */
+        public double estimate() {
+            return this.estimate;
+        }
+
+        /**
+         * Returns the relative error of the estimate.
+         *
+         * @return (estimate - mu) / mu
+         */
+        public double relativeError() {
+            return (this.estimate - this.mu) / this.mu;
+        }
+
+    }
+
+    /**
+     * How a search visits the combinations.
+     */
+    public enum Mode {
+        /**
+         * Every combination, in visiting order.
+         */
+        EXHAUSTIVE,
+        /**
+         * For each right product, only the left products next to where the
+         * estimate crosses mu.
+         */
+        MEET_IN_THE_MIDDLE
+    }
+
+    /**
+     * Best combination of part of a search: its difference from mu and its
+     * position in visiting order.
+     */
+    private static final class Best {
+
+        /**
+         * Estimate minus mu.
+         */
+        private double diff;
+
+        /**
+         * Position of the combination in visiting order.
+         */
+        private long index;
+
+        /**
+         * Constructor.
+         *
+         * @param diff
+         *            estimate minus mu
+         * @param index
+         *            position of the combination
+         */
+        Best(double diff, long index) {
+            this.diff = diff;
+            this.index = index;
+        }
+
+        /**
+         * Replaces this by {@code other} if other is better, i.e., closer to
+         * mu, or as close and earlier in visiting order.
+         *
+         * @param other
+         *            the other candidate
+         */
+        void merge(Best other) {
+            double a = Math.abs(other.diff);
+            double b = Math.abs(this.diff);
+            if (a < b || (a == b && other.index < this.index)) {
+                this.diff = other.diff;
+                this.index = other.index;
+            }
+        }
+
+    }
+
+    /**
+     * The k best combinations of part of a search, in a max-heap ordered by
+     * distance from mu and then by visiting order, so the worst is on top.
+     */
+    private static final class TopK {
+
+        /**
+         * Estimate minus mu of each combination, in heap order.
+         */
+        private final double[] diffs;
+
+        /**
+         * Position of each combination in visiting order.
+         */
+        private final long[] indices;
+
+        /**
+         * Number of combinations held.
+         */
+        private int size;
+
+        /**
+         * Constructor.
+         *
+         * @param k
+         *            number of combinations to keep
+         */
+        TopK(int k) {
+            this.diffs = new double[k];
+            this.indices = new long[k];
+        }
+
+        /**
+         * Reports whether the combination at heap position {@code i} is worse
+         * than the one with {@code diff} and {@code index}.
+         *
+         * @param i
+         *            heap position
+         * @param diff
+         *            estimate minus mu of the other combination
+         * @param index
+         *            position of the other combination
+         * @return true iff the combination at i is worse
+         */
+        private boolean worse(int i, double diff, long index) {
+            double a = Math.abs(this.diffs[i]);
+            double b = Math.abs(diff);
+            return a > b || (a == b && this.indices[i] > index);
+        }
+
+        /**
+         * Returns the distance from mu above which no combination can enter.
+         *
+         * @return the distance of the worst kept, or infinity if there is
+         *         room
+         */
+        double threshold() {
+            double threshold = Double.POSITIVE_INFINITY;
+            if (this.size == this.diffs.length) {
+                threshold = Math.abs(this.diffs[0]);
+            }
+            return threshold;
+        }
+
+        /**
+         * Moves the combination with {@code diff} and {@code index} down from
+         * heap position {@code i} to its place.
+         *
+         * @param i
+         *            heap position
+         * @param diff
+         *            estimate minus mu
+         * @param index
+         *            position in visiting order
+         */
+        private void siftDown(int i, double diff, long index) {
+            int hole = i;
+            int child = 2 * hole + 1;
+            while (child < this.size) {
+                if (child + 1 < this.size && this.worse(child + 1,
+                        this.diffs[child], this.indices[child])) {
+                    child++;
+                }
+                if (this.worse(child, diff, index)) {
+                    this.diffs[hole] = this.diffs[child];
+                    this.indices[hole] = this.indices[child];
+                    hole = child;
+                    child = 2 * hole + 1;
+                } else {
+                    child = this.size;
+                }
+            }
+            this.diffs[hole] = diff;
+            this.indices[hole] = index;
+        }
+
+        /**
+         * Keeps the combination with {@code diff} and {@code index} if it is
+         * among the k best seen.
+         *
+         * @param diff
+         *            estimate minus mu
+         * @param index
+         *            position in visiting order
+         */
+        void offer(double diff, long index) {
+            if (this.size < this.diffs.length) {
+                int hole = this.size;
+                this.size++;
+                while (hole > 0 && !this.worse((hole - 1) / 2, diff, index)) {
+                    int parent = (hole - 1) / 2;
+                    this.diffs[hole] = this.diffs[parent];
+                    this.indices[hole] = this.indices[parent];
+                    hole = parent;
+                }
+                this.diffs[hole] = diff;
+                this.indices[hole] = index;
+            } else if (this.worse(0, diff, index)) {
+                this.siftDown(0, diff, index);
+            }
+        }
+
+        /**
+         * Keeps those of the combinations of {@code other} that are among the
+         * k best of both.
+         *
+         * @param other
+         *            the other combinations
+         */
+        void merge(TopK other) {
+            for (int i = 0; i < other.size; i++) {
+                this.offer(other.diffs[i], other.indices[i]);
+            }
+        }
+
+        /**
+         * Empties the heap into {@code diffs[0..size)} and
+         * {@code indices[0..size)}, best first, and returns how many there
+         * are.
+         *
+         * @return the number of combinations
+         */
+        int drain() {
+            int count = this.size;
+            while (this.size > 0) {
+                double diff = this.diffs[0];
+                long index = this.indices[0];
+                this.size--;
+                this.siftDown(0, this.diffs[this.size],
+                        this.indices[this.size]);
+                this.diffs[this.size] = diff;
+                this.indices[this.size] = index;
+            }
+            return count;
+        }
+
+    }
+
+    /**
+     * Searches a range of right products.
+     */
+    private final class RangeTask extends RecursiveTask<Best> {
+
+        /**
+         * Serialization version, required since RecursiveTask is
+         * Serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The target.
+         */
+        private final double mu;
+
+        /**
+         * First right index of the range.
+         */
+        private final int low;
+
+        /**
+         * Right index just past the range.
+         */
+        private final int high;
+
+        /**
+         * Constructor.
+         *
+         * @param mu
+         *            the target
+         * @param low
+         *            first right index of the range
+         * @param high
+         *            right index just past the range
+         */
+        RangeTask(double mu, int low, int high) {
+            this.mu = mu;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected Best compute() {
+            Best best;
+            long work = (long) (this.high - this.low)
+                    * ABCDSearch.this.left.length;
+            if (this.high - this.low <= 1 || work <= GRAIN) {
+                best = ABCDSearch.this.scan(this.mu, this.low, this.high);
+            } else {
+                int middle = (this.low + this.high) >>> 1;
+                RangeTask first = new RangeTask(this.mu, this.low, middle);
+                first.fork();
+                best = new RangeTask(this.mu, middle, this.high).compute();
+                best.merge(first.join());
+            }
+            return best;
+        }
+
+    }
+
+    /**
+     * Searches a range of right products for the k best combinations.
+     */
+    private final class TopRangeTask extends RecursiveTask<TopK> {
+
+        /**
+         * Serialization version, required since RecursiveTask is
+         * Serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The target.
+         */
+        private final double mu;
+
+        /**
+         * Number of combinations to keep.
+         */
+        private final int k;
+
+        /**
+         * First right index of the range.
+         */
+        private final int low;
+
+        /**
+         * Right index just past the range.
+         */
+        private final int high;
+
+        /**
+         * Constructor.
+         *
+         * @param mu
+         *            the target
+         * @param k
+         *            number of combinations to keep
+         * @param low
+         *            first right index of the range
+         * @param high
+         *            right index just past the range
+         */
+        TopRangeTask(double mu, int k, int low, int high) {
+            this.mu = mu;
+            this.k = k;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected TopK compute() {
+            TopK top;
+            long work = (long) (this.high - this.low)
+                    * ABCDSearch.this.left.length;
+            if (this.high - this.low <= 1 || work <= GRAIN) {
+                top = ABCDSearch.this.scanTop(this.mu, this.k, this.low,
+                        this.high);
+            } else {
+                int middle = (this.low + this.high) >>> 1;
+                TopRangeTask first = new TopRangeTask(this.mu, this.k,
+                        this.low, middle);
+                first.fork();
+                top = new TopRangeTask(this.mu, this.k, middle, this.high)
+                        .compute();
+                top.merge(first.join());
+            }
+            return top;
+        }
+
+    }
+
+    /**
+     * The exponent set.
+     */
+    private final double[] exponents;
+
+    /**
+     * Number of constants.
+     */
+    private final int constants;
+
+    /**
+     * Products of powers of the first ceil(N / 2) constants:
+     * {@code left[e0 + e1 * |E| + ...] = c0^E[e0] * c1^E[e1] * ...}.
+     */
+    private final double[] left;
+
+    /**
+     * Products of powers of the remaining constants, indexed the same way.
+     */
+    private final double[] right;
+
+    /**
+     * The left products in increasing order; sorted by the first
+     * meet-in-the-middle search.
+     */
+    private double[] sortedLeft;
+
+    /**
+     * Index in {@code left} of each entry of {@code sortedLeft}.
+     */
+    private long[] sortedIndex;
+
+    /**
+     * Estimates of all combinations in increasing order; computed by the
+     * first batch search.
+     */
+    private double[] sortedProducts;
+
+    /**
+     * Position in visiting order of each entry of {@code sortedProducts}.
+     */
+    private long[] sortedProductIndex;
+
+    /**
+     * Returns the products of powers of {@code constants[from..to)}, indexed
+     * with the exponent of {@code constants[from]} varying fastest, each
+     * multiplied out left to right (starting from 1.0, which is exact).
+     *
+     * @param constants
+     *            the constants
+     * @param exponents
+     *            the exponent set
+     * @param from
+     *            first constant
+     * @param to
+     *            constant just past the last
+     * @return the products
+     */
+    private static double[] products(double[] constants, double[] exponents,
+            int from, int to) {
+        double[] table = { 1.0 };
+        for (int i = from; i < to; i++) {
+            double[] powers = new double[exponents.length];
+            for (int e = 0; e < exponents.length; e++) {
+                powers[e] = Math.pow(constants[i], exponents[e]);
+            }
+            double[] next = new double[table.length * exponents.length];
+            for (int e = 0; e < exponents.length; e++) {
+                for (int j = 0; j < table.length; j++) {
+                    next[j + e * table.length] = table[j] * powers[e];
+                }
+            }
+            table = next;
+        }
+        return table;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param constants
+     *            the constants
+     * @param exponents
+     *            the exponent set
+     * @requires <pre>
+     * |constants| > 0  and  [every constant is positive]  and
+     * |exponents| > 0  and  |exponents| ^ ceil(|constants| / 2) <= 2^24
+     * </pre>
+     */
+    public ABCDSearch(double[] constants, double[] exponents) {
+        assert constants != null : "Violation of: constants is not null";
+        assert exponents != null : "Violation of: exponents is not null";
+        assert constants.length > 0 : "Violation of: |constants| > 0";
+        assert exponents.length > 0 : "Violation of: |exponents| > 0";
+        assert Math.pow(exponents.length,
+                (constants.length + 1) / 2) <= MAX_TABLE : ""
+                        + "Violation of: |exponents| ^ ceil(|constants| / 2)"
+                        + " <= 2^24";
+        this.exponents = exponents.clone();
+        this.constants = constants.length;
+        int half = (constants.length + 1) / 2;
+        this.left = products(constants, exponents, 0, half);
+        this.right = products(constants, exponents, half, constants.length);
+    }
+
+    /**
+     * Constructor for the de Jager exponent set.
+     *
+     * @param constants
+     *            the constants
+     * @requires <pre>
+     * 0 < |constants| <= 10  and  [every constant is positive]
+     * </pre>
+     */
+    public ABCDSearch(double[] constants) {
+        this(constants, DE_JAGER_EXPONENTS);
+    }
+
+    /**
+     * Returns the exponent set of the de Jager formula: 0, +-1, +-2, +-3,
+     * +-4, +-5, +-1/2, +-1/3 and +-1/4.
+     *
+     * @return a copy of the de Jager exponents
+     */
+    public static double[] deJagerExponents() {
+        return DE_JAGER_EXPONENTS.clone();
+    }
+
+    /**
+     * Returns the number of combinations a search visits.
+     *
+     * @return |E|^N
+     */
+    public long combinations() {
+        return (long) this.left.length * this.right.length;
+    }
+
+    /**
+     * Searches the combinations with right products {@code right[low..high)}.
+     *
+     * @param mu
+     *            the target
+     * @param low
+     *            first right index
+     * @param high
+     *            right index just past the last
+     * @return the best combination of the range
+     */
+    private Best scan(double mu, int low, int high) {
+        double[] lows = this.left;
+        double bestDiff = lows[0] * this.right[low] - mu;
+        long best = (long) low * lows.length;
+        for (int r = low; r < high; r++) {
+            double product = this.right[r];
+            long base = (long) r * lows.length;
+            for (int j = 0; j < lows.length; j++) {
+                double est = lows[j] * product - mu;
+                if (Math.abs(est) < Math.abs(bestDiff)) {
+                    bestDiff = est;
+                    best = base + j;
+                }
+            }
+        }
+        return new Best(bestDiff, best);
+    }
+
+    /**
+     * Searches the combinations with right products {@code right[low..high)}
+     * for the k best.
+     *
+     * @param mu
+     *            the target
+     * @param k
+     *            number of combinations to keep
+     * @param low
+     *            first right index
+     * @param high
+     *            right index just past the last
+     * @return the k best combinations of the range
+     */
+    private TopK scanTop(double mu, int k, int low, int high) {
+        TopK top = new TopK(k);
+        double[] lows = this.left;
+        double threshold = top.threshold();
+        for (int r = low; r < high; r++) {
+            double product = this.right[r];
+            long base = (long) r * lows.length;
+            for (int j = 0; j < lows.length; j++) {
+                double est = lows[j] * product - mu;
+                if (Math.abs(est) <= threshold) {
+                    top.offer(est, base + j);
+                    threshold = top.threshold();
+                }
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Sorts {@code values} into increasing order, and {@code indices} along
+     * with it, breaking ties by index; a bottom-up merge sort on the two
+     * primitive arrays.
+     *
+     * @param values
+     *            the values
+     * @param indices
+     *            the index of each value
+     * @updates values, indices
+     * @requires |values| = |indices|
+     * @ensures <pre>
+     * [values is sorted, and indices is permuted the same way]
+     * </pre>
+     */
+    private static void sortByValue(double[] values, long[] indices) {
+        int n = values.length;
+        double[] from = values;
+        long[] fromIndices = indices;
+        double[] to = new double[n];
+        long[] toIndices = new long[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int low = 0; low < n; low += 2 * width) {
+                int middle = Math.min(low + width, n);
+                int high = Math.min(low + 2 * width, n);
+                int i = low;
+                int j = middle;
+                for (int k = low; k < high; k++) {
+                    if (j == high || (i < middle && (from[i] < from[j]
+                            || (from[i] == from[j]
+                                    && fromIndices[i] <= fromIndices[j])))) {
+                        to[k] = from[i];
+                        toIndices[k] = fromIndices[i];
+                        i++;
+                    } else {
+                        to[k] = from[j];
+                        toIndices[k] = fromIndices[j];
+                        j++;
+                    }
+                }
+            }
+            double[] swap = from;
+            from = to;
+            to = swap;
+            long[] swapIndices = fromIndices;
+            fromIndices = toIndices;
+            toIndices = swapIndices;
+        }
+        if (from != values) {
+            System.arraycopy(from, 0, values, 0, n);
+            System.arraycopy(fromIndices, 0, indices, 0, n);
+        }
+    }
+
+    /**
+     * Sorts the left products, unless an earlier search already has.
+     */
+    private synchronized void sortLeft() {
+        if (this.sortedLeft == null) {
+            long[] indices = new long[this.left.length];
+            for (int j = 0; j < indices.length; j++) {
+                indices[j] = j;
+            }
+            double[] values = this.left.clone();
+            sortByValue(values, indices);
+            this.sortedIndex = indices;
+            this.sortedLeft = values;
+        }
+    }
+
+    /**
+     * Computes and sorts the estimates of all combinations, unless an earlier
+     * batch search already has. The sorted estimates and their indices take
+     * 16 bytes per combination, and the merge sort needs as much again while
+     * it runs.
+     */
+    private synchronized void sortProducts() {
+        if (this.sortedProducts == null) {
+            int count = (int) this.combinations();
+            double[] values = new double[count];
+            long[] indices = new long[count];
+            int q = 0;
+            for (int r = 0; r < this.right.length; r++) {
+                for (int j = 0; j < this.left.length; j++) {
+                    values[q] = this.left[j] * this.right[r];
+                    indices[q] = q;
+                    q++;
+                }
+            }
+            sortByValue(values, indices);
+            this.sortedProductIndex = indices;
+            this.sortedProducts = values;
+        }
+    }
+
+    /**
+     * Finds the entry of {@code values} whose product with {@code factor} is
+     * closest to {@code mu}, by binary search; among equally close entries,
+     * the one with the least index.
+     *
+     * @param values
+     *            the values, in increasing order
+     * @param indices
+     *            the index of each value
+     * @param factor
+     *            the factor
+     * @param mu
+     *            the target
+     * @return the closest entry's product less mu, and its index
+     * @requires |values| = |indices| > 0 and factor > 0
+     */
+    private static Best nearest(double[] values, long[] indices,
+            double factor, double mu) {
+        /*
+         * Find the first position whose estimate is at least mu; the
+         * estimate, and so its distance from mu on either side of that
+         * position, is monotone in the value
+         */
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] * factor - mu < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        double bestAbs = Double.POSITIVE_INFINITY;
+        if (low > 0) {
+            bestAbs = Math.abs(values[low - 1] * factor - mu);
+        }
+        if (low < values.length) {
+            bestAbs = Math.min(bestAbs, Math.abs(values[low] * factor - mu));
+        }
+        /*
+         * Equally close entries are contiguous next to the crossing; keep the
+         * one earliest in visiting order
+         */
+        long best = Long.MAX_VALUE;
+        double bestDiff = 0;
+        for (int j = low - 1; j >= 0
+                && Math.abs(values[j] * factor - mu) == bestAbs; j--) {
+            if (indices[j] < best) {
+                best = indices[j];
+                bestDiff = values[j] * factor - mu;
+            }
+        }
+        for (int j = low; j < values.length
+                && Math.abs(values[j] * factor - mu) == bestAbs; j++) {
+            if (indices[j] < best) {
+                best = indices[j];
+                bestDiff = values[j] * factor - mu;
+            }
+        }
+        return new Best(bestDiff, best);
+    }
+
+    /**
+     * Finds the best combination with right product {@code right[r]} by
+     * binary search in the sorted left products.
+     *
+     * @param mu
+     *            the target
+     * @param r
+     *            right index
+     * @return the best combination with that right product
+     */
+    private Best closest(double mu, int r) {
+        Best best = nearest(this.sortedLeft, this.sortedIndex, this.right[r],
+                mu);
+        best.index += (long) r * this.left.length;
+        return best;
+    }
+
+    /**
+     * Turns the best combination of a search into a {@code Result}.
+     *
+     * @param best
+     *            the best combination
+     * @param mu
+     *            the target
+     * @return the result
+     */
+    private Result result(Best best, double mu) {
+        return this.result(best.diff, best.index, mu);
+    }
+
+    /**
+     * Turns a combination into a {@code Result}.
+     *
+     * @param diff
+     *            estimate minus mu
+     * @param index
+     *            position of the combination in visiting order
+     * @param mu
+     *            the target
+     * @return the result
+     */
+    private Result result(double diff, long index, double mu) {
+        int size = this.exponents.length;
+        int[] indices = new int[this.constants];
+        long rest = index;
+        for (int i = 0; i < this.constants; i++) {
+            indices[i] = (int) (rest % size);
+            rest /= size;
+        }
+        return new Result(indices, this.exponents, mu + diff, mu);
+    }
+
+    /**
+     * Turns the k best combinations of a search into {@code Result}s.
+     *
+     * @param top
+     *            the k best combinations
+     * @param mu
+     *            the target
+     * @return the results, best first
+     */
+    private Result[] results(TopK top, double mu) {
+        Result[] results = new Result[top.drain()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = this.result(top.diffs[i], top.indices[i], mu);
+        }
+        return results;
+    }
+
+    /**
+     * Finds the exponents that bring the formula closest to {@code mu}.
+     *
+     * @param mu
+     *            the target
+     * @return the best combination
+     * @requires mu > 0
+     */
+    public Result search(double mu) {
+        assert mu > 0 : "Violation of: mu > 0";
+        return this.result(this.scan(mu, 0, this.right.length), mu);
+    }
+
+    /**
+     * Finds the exponents that bring the formula closest to {@code mu},
+     * visiting the combinations as {@code mode} says. The result does not
+     * depend on the mode.
+     *
+     * @param mu
+     *            the target
+     * @param mode
+     *            how to visit the combinations
+     * @return the best combination
+     * @requires mu > 0
+     */
+    public Result search(double mu, Mode mode) {
+        assert mu > 0 : "Violation of: mu > 0";
+        assert mode != null : "Violation of: mode is not null";
+        Result result;
+        if (mode == Mode.EXHAUSTIVE) {
+            result = this.search(mu);
+        } else {
+            this.sortLeft();
+            Best best = this.closest(mu, 0);
+            for (int r = 1; r < this.right.length; r++) {
+                best.merge(this.closest(mu, r));
+            }
+            result = this.result(best, mu);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the exponents that bring the formula closest to {@code mu},
+     * searching on the workers of {@code pool}. The result is the same as
+     * that of {@link #search(double)}.
+     *
+     * @param mu
+     *            the target
+     * @param pool
+     *            the pool to search on
+     * @return the best combination
+     * @requires mu > 0
+     */
+    public Result search(double mu, ForkJoinPool pool) {
+        assert mu > 0 : "Violation of: mu > 0";
+        assert pool != null : "Violation of: pool is not null";
+        Best best = pool.invoke(new RangeTask(mu, 0, this.right.length));
+        return this.result(best, mu);
+    }
+
+    /**
+     * Finds, for each target, the exponents that bring the formula closest to
+     * it. The estimates of all combinations are computed and sorted by the
+     * first call, after which each target costs one binary search; the
+     * results are those of {@link #search(double)}. The first call allocates
+     * 32 bytes per combination, 16 of which this engine keeps; that is 2.7 MB
+     * for four constants and the de Jager exponents, and at most 64 MB.
+     *
+     * @param mus
+     *            the targets
+     * @return the best combination for each target, in the same order
+     * @requires <pre>
+     * [every mu in mus is positive]  and  |E|^N <= 2^21
+     * </pre>
+     */
+    public Result[] searchAll(double[] mus) {
+        assert mus != null : "Violation of: mus is not null";
+        assert this.combinations() <= MAX_BATCH : ""
+                + "Violation of: |E|^N <= 2^21";
+        this.sortProducts();
+        Result[] results = new Result[mus.length];
+        for (int i = 0; i < mus.length; i++) {
+            assert mus[i] > 0 : "Violation of: mu > 0";
+            results[i] = this.result(nearest(this.sortedProducts,
+                    this.sortedProductIndex, 1.0, mus[i]), mus[i]);
+        }
+        return results;
+    }
+
+    /**
+     * Finds the {@code k} combinations of exponents that bring the formula
+     * closest to {@code mu}, best first; the first is the one
+     * {@link #search(double)} returns.
+     *
+     * @param mu
+     *            the target
+     * @param k
+     *            number of combinations to return
+     * @return the k best combinations, or all of them if there are fewer
+     * @requires mu > 0 and k > 0
+     */
+    public Result[] searchTop(double mu, int k) {
+        assert mu > 0 : "Violation of: mu > 0";
+        assert k > 0 : "Violation of: k > 0";
+        return this.results(this.scanTop(mu, k, 0, this.right.length), mu);
+    }
+
+    /**
+     * Finds the {@code k} combinations of exponents that bring the formula
+     * closest to {@code mu}, best first, searching on the workers of
+     * {@code pool}. The result is the same as that of
+     * {@link #searchTop(double, int)}.
+     *
+     * @param mu
+     *            the target
+     * @param k
+     *            number of combinations to return
+     * @param pool
+     *            the pool to search on
+     * @return the k best combinations, or all of them if there are fewer
+     * @requires mu > 0 and k > 0
+     */
+    public Result[] searchTop(double mu, int k, ForkJoinPool pool) {
+        assert mu > 0 : "Violation of: mu > 0";
+        assert k > 0 : "Violation of: k > 0";
+        assert pool != null : "Violation of: pool is not null";
+        TopK top = pool.invoke(new TopRangeTask(mu, k, 0, this.right.length));
+        return this.results(top, mu);
+    }
+
+    /**
+     * The search as {@code ABCDGuesser1} originally did it, with four calls
+     * to {@code Math.pow} per combination; the baseline for the benchmark.
+     *
+     * @param mu
+     *            the target
+     * @param personal
+     *            the four constants
+     * @param exponents
+     *            the exponent set
+     * @return index of the best exponent of each constant
+     */
+    private static int[] originalSearch(double mu, double[] personal,
+            double[] exponents) {
+        int[] best = new int[CONSTANTS];
+        double diff = Math.pow(personal[0], exponents[0])
+                * Math.pow(personal[1], exponents[0])
+                * Math.pow(personal[2], exponents[0])
+                * Math.pow(personal[3], exponents[0]) - mu;
+        for (int z = 0; z < exponents.length; z++) {
+            for (int y = 0; y < exponents.length; y++) {
+                for (int x = 0; x < exponents.length; x++) {
+                    for (int w = 0; w < exponents.length; w++) {
+                        double est = Math.pow(personal[0], exponents[w])
+                                * Math.pow(personal[1], exponents[x])
+                                * Math.pow(personal[2], exponents[y])
+                                * Math.pow(personal[3], exponents[z]) - mu;
+                        if (Math.abs(est) < Math.abs(diff)) {
+                            diff = est;
+                            best[0] = w;
+                            best[1] = x;
+                            best[2] = y;
+                            best[CONSTANTS - 1] = z;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Main method: times the original loop against the engine, including the
+     * engine's setup, on a few targets, then serial against parallel and
+     * meet-in-the-middle search with six constants, the throughput in
+     * combinations per nanosecond of exhaustive search, serial against parallel
+     * top-10 search, meet-in-the-middle search with eight constants, and
+     * finally one search per target against a batch search of many targets.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+
+        final double[] personal = { 14, 102, 1998, 2023 };
+        final double[] targets = { 299_792_458, 6.02214076e23, 1.602e-19,
+                2.718281828, 8.314 };
+        final int repetitions = 20;
+        final double nanosPerMicro = 1e3;
+        final double nanosPerMilli = 1e6;
+        double[] exponents = deJagerExponents();
+
+        int disagreements = 0;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            for (double mu : targets) {
+                originalSearch(mu, personal, exponents);
+                new ABCDSearch(personal, exponents).search(mu);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int k = 0; k < repetitions; k++) {
+            for (double mu : targets) {
+                originalSearch(mu, personal, exponents);
+            }
+        }
+        long original = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int k = 0; k < repetitions; k++) {
+            for (double mu : targets) {
+                new ABCDSearch(personal, exponents).search(mu);
+            }
+        }
+        long engine = System.nanoTime() - start;
+
+        for (double mu : targets) {
+            int[] expected = originalSearch(mu, personal, exponents);
+            Result result = new ABCDSearch(personal, exponents).search(mu);
+            for (int i = 0; i < CONSTANTS; i++) {
+                if (expected[i] != result.exponentIndex(i)) {
+                    disagreements++;
+                }
+            }
+        }
+
+        int searches = repetitions * targets.length;
+        out.println("original loop: "
+                + Math.round(original / nanosPerMicro / searches)
+                + " us per search");
+        out.println("engine:        "
+                + Math.round(engine / nanosPerMicro / searches)
+                + " us per search, "
+                + Math.round(10.0 * original / engine) / 10.0 + "x faster");
+
+        final double[] six = { 14, 102, 1998, 2023, 7, 365.25 };
+        ABCDSearch wide = new ABCDSearch(six, exponents);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        wide.search(targets[0]);
+        wide.search(targets[0], pool);
+        wide.search(targets[0], Mode.MEET_IN_THE_MIDDLE);
+        start = System.nanoTime();
+        Result serial = wide.search(targets[0]);
+        long serialTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        Result parallel = wide.search(targets[0], pool);
+        long parallelTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        Result middle = wide.search(targets[0], Mode.MEET_IN_THE_MIDDLE);
+        long middleTime = System.nanoTime() - start;
+        for (int i = 0; i < six.length; i++) {
+            if (serial.exponentIndex(i) != parallel.exponentIndex(i)) {
+                disagreements++;
+            }
+            if (serial.exponentIndex(i) != middle.exponentIndex(i)) {
+                disagreements++;
+            }
+        }
+        out.println(six.length + " constants, " + wide.combinations()
+                + " combinations: serial "
+                + Math.round(serialTime / nanosPerMilli) + " ms, parallel "
+                + Math.round(parallelTime / nanosPerMilli) + " ms on "
+                + pool.getParallelism() + " workers, meet in the middle "
+                + Math.round(middleTime / nanosPerMicro) + " us");
+
+        final int passes = 20;
+        wide.search(targets[0]);
+        start = System.nanoTime();
+        for (int pass = 0; pass < passes; pass++) {
+            wide.search(targets[pass % targets.length]);
+        }
+        long exhaustiveTime = System.nanoTime() - start;
+        out.println(Mode.EXHAUSTIVE + ": "
+                + Math.round(100.0 * passes * wide.combinations()
+                        / exhaustiveTime) / 100.0
+                + " combinations per ns");
+
+        final int k = 10;
+        wide.searchTop(targets[0], k);
+        wide.searchTop(targets[0], k, pool);
+        start = System.nanoTime();
+        Result[] top = wide.searchTop(targets[0], k);
+        long topTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        Result[] parallelTop = wide.searchTop(targets[0], k, pool);
+        long parallelTopTime = System.nanoTime() - start;
+        for (int t = 0; t < k; t++) {
+            for (int i = 0; i < six.length; i++) {
+                if (top[t].exponentIndex(i) != parallelTop[t]
+                        .exponentIndex(i)) {
+                    disagreements++;
+                }
+            }
+        }
+        out.println("top " + k + ": serial "
+                + Math.round(topTime / nanosPerMilli) + " ms, parallel "
+                + Math.round(parallelTopTime / nanosPerMilli)
+                + " ms; relative errors " + top[0].relativeError() + " to "
+                + top[k - 1].relativeError());
+
+        final double[] eight = { 14, 102, 1998, 2023, 7, 365.25, 1.5, 42 };
+        start = System.nanoTime();
+        ABCDSearch widest = new ABCDSearch(eight, exponents);
+        long setupTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        widest.search(targets[0], Mode.MEET_IN_THE_MIDDLE);
+        middleTime = System.nanoTime() - start;
+        out.println(eight.length + " constants, " + widest.combinations()
+                + " combinations: setup "
+                + Math.round(setupTime / nanosPerMilli)
+                + " ms, meet in the middle "
+                + Math.round(middleTime / nanosPerMilli) + " ms");
+
+        final int batchSize = 1000;
+        final double spread = 20.0;
+        final long seed = 20_241_018L;
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] mus = new double[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            mus[i] = Math.exp(spread * (random.nextDouble() - 0.5));
+        }
+        ABCDSearch narrow = new ABCDSearch(personal, exponents);
+        start = System.nanoTime();
+        Result[] single = new Result[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            single[i] = narrow.search(mus[i]);
+        }
+        long singleTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        Result[] batch = narrow.searchAll(mus);
+        long batchTime = System.nanoTime() - start;
+        for (int t = 0; t < batchSize; t++) {
+            for (int i = 0; i < CONSTANTS; i++) {
+                if (single[t].exponentIndex(i) != batch[t].exponentIndex(i)) {
+                    disagreements++;
+                }
+            }
+        }
+        out.println(batchSize + " targets: one search each "
+                + Math.round(singleTime / nanosPerMilli) + " ms, batch "
+                + Math.round(batchTime / nanosPerMilli) + " ms");
+        if (disagreements > 0) {
+            out.println("*** " + disagreements + " exponents differ");
+        }
+
+        out.close();
+    }
+
+}
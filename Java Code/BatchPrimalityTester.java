@@ -0,0 +1,383 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+import components.naturalnumber.NaturalNumber;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Primality testing for many numbers at once.
+ *
+ * <p>
+ * The sieving primes of {@link SmallPrimeSieve} are grouped once into
+ * products that fit in an {@code int}, so trial division of a candidate costs
+ * one pass over its limbs per group rather than one per prime; about nine in
+ * ten random odd candidates are rejected this way. Numbers that survive are
+ * checked with {@link MillerRabinTester}. The batch is split recursively over
+ * the workers of a fork-join pool, each worker using its own random source,
+ * and the answers come back in the order of the input.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class BatchPrimalityTester {
+
+    /**
+     * Batches of at most this many numbers are tested by one worker.
+     */
+    private static final int GRAIN = 4;
+
+    /**
+     * The sieving primes, in increasing order.
+     */
+    private static final int[] PRIMES = SmallPrimeSieve.sievingPrimes();
+
+    /**
+     * {@code GROUP_END[g]} is the index in {@code PRIMES} just past group g;
+     * group g starts where group g - 1 ends.
+     */
+    private static final int[] GROUP_END = groupEnds();
+
+    /**
+     * {@code GROUP_PRODUCT[g]} is the product of the primes in group g.
+     */
+    private static final int[] GROUP_PRODUCT = groupProducts();
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private BatchPrimalityTester() {
+    }
+
+    /**
+     * Splits {@code PRIMES} into runs of consecutive primes whose products fit
+     * in an {@code int}.
+     *
+     * @return the index just past each run
+     */
+    private static int[] groupEnds() {
+        int[] ends = new int[PRIMES.length];
+        int groups = 0;
+        long product = 1;
+        for (int i = 0; i < PRIMES.length; i++) {
+            if (product * PRIMES[i] > Integer.MAX_VALUE) {
+                ends[groups] = i;
+                groups++;
+                product = 1;
+            }
+            product *= PRIMES[i];
+        }
+        ends[groups] = PRIMES.length;
+        groups++;
+        int[] result = new int[groups];
+        System.arraycopy(ends, 0, result, 0, groups);
+        return result;
+    }
+
+    /**
+     * Computes the product of each group of {@code PRIMES}.
+     *
+     * @return the group products
+     */
+    private static int[] groupProducts() {
+        int[] products = new int[GROUP_END.length];
+        int start = 0;
+        for (int g = 0; g < GROUP_END.length; g++) {
+            int product = 1;
+            for (int i = start; i < GROUP_END[g]; i++) {
+                product *= PRIMES[i];
+            }
+            products[g] = product;
+            start = GROUP_END[g];
+        }
+        return products;
+    }
+
+    /**
+     * Tests a contiguous range of a batch.
+     */
+    private static final class RangeTask extends RecursiveAction {
+
+        /**
+         * Serialization version, required since RecursiveAction is
+         * Serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The numbers to test.
+         */
+        private final NaturalNumber[] candidates;
+
+        /**
+         * Where the answers go.
+         */
+        private final boolean[] results;
+
+        /**
+         * First index of the range.
+         */
+        private final int low;
+
+        /**
+         * Index just past the range.
+         */
+        private final int high;
+
+        /**
+         * Number of Miller-Rabin rounds.
+         */
+        private final int rounds;
+
+        /**
+         * Constructor.
+         *
+         * @param candidates
+         *            the numbers to test
+         * @param results
+         *            where the answers go
+         * @param low
+         *            first index of the range
+         * @param high
+         *            index just past the range
+         * @param rounds
+         *            number of Miller-Rabin rounds
+         */
+        RangeTask(NaturalNumber[] candidates, boolean[] results, int low,
+                int high, int rounds) {
+            this.candidates = candidates;
+            this.results = results;
+            this.low = low;
+            this.high = high;
+            this.rounds = rounds;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.high - this.low <= GRAIN) {
+                for (int i = this.low; i < this.high; i++) {
+                    this.results[i] = isPrime(this.candidates[i], this.rounds);
+                }
+            } else {
+                int middle = (this.low + this.high) >>> 1;
+                invokeAll(
+                        new RangeTask(this.candidates, this.results, this.low,
+                                middle, this.rounds),
+                        new RangeTask(this.candidates, this.results, middle,
+                                this.high, this.rounds));
+            }
+        }
+
+    }
+
+    /**
+     * Reports whether n is a prime; may be wrong with "low" probability. Any
+     * n is allowed: 0 and 1 are not prime.
+     *
+     * @param n
+     *            number to be checked
+     * @param rounds
+     *            number of random bases to try when n >= 2^64
+     * @return true means n is very likely prime; false means n is definitely
+     *         not prime
+     * @requires rounds > 0
+     */
+    public static boolean isPrime(NaturalNumber n, int rounds) {
+        assert n != null : "Violation of: n is not null";
+        assert rounds > 0 : "Violation of: rounds > 0";
+        NaturalNumber3 x = NaturalNumber3.asNaturalNumber3(n);
+        int largest = PRIMES[PRIMES.length - 1];
+        boolean prime;
+        if (x.bitLength() <= 1) {
+            prime = false;
+        } else if (!x.testBit(0)) {
+            prime = x.bitLength() == 2 && x.lowestSetBit() == 1;
+        } else if (x.canConvertToInt() && x.toInt() <= largest) {
+            prime = Arrays.binarySearch(PRIMES, x.toInt()) >= 0;
+        } else {
+            /*
+             * x exceeds every sieving prime, so any factor among them proves
+             * it composite
+             */
+            prime = true;
+            int start = 0;
+            for (int g = 0; prime && g < GROUP_END.length; g++) {
+                int r = x.remainderSmall(GROUP_PRODUCT[g]);
+                for (int i = start; prime && i < GROUP_END[g]; i++) {
+                    prime = r % PRIMES[i] != 0;
+                }
+                start = GROUP_END[g];
+            }
+            if (prime) {
+                prime = new MillerRabinTester(x).isProbablePrime(rounds);
+            }
+        }
+        return prime;
+    }
+
+    /**
+     * Tests every number of {@code candidates} on the workers of
+     * {@code pool}.
+     *
+     * @param candidates
+     *            the numbers to test
+     * @param rounds
+     *            number of random bases to try for numbers >= 2^64
+     * @param pool
+     *            the pool to run the tests on
+     * @return {@code result[i]} is true iff the i-th number, in the iteration
+     *         order of {@code candidates}, is very likely prime
+     * @requires rounds > 0 and [candidates are not changed during the call]
+     */
+    public static boolean[] isPrime(
+            Collection<? extends NaturalNumber> candidates, int rounds,
+            ForkJoinPool pool) {
+        assert candidates != null : "Violation of: candidates is not null";
+        assert pool != null : "Violation of: pool is not null";
+        return isPrime(candidates.toArray(new NaturalNumber[0]), rounds,
+                pool);
+    }
+
+    /**
+     * Tests every number of {@code candidates} on the common fork-join pool.
+     *
+     * @param candidates
+     *            the numbers to test
+     * @return {@code result[i]} is true iff the i-th number, in the iteration
+     *         order of {@code candidates}, is very likely prime
+     * @requires [candidates are not changed during the call]
+     */
+    public static boolean[] isPrime(
+            Collection<? extends NaturalNumber> candidates) {
+        return isPrime(candidates, MillerRabinTester.DEFAULT_ROUNDS,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tests every number of {@code candidates} on the workers of
+     * {@code pool}.
+     *
+     * @param candidates
+     *            the numbers to test
+     * @param rounds
+     *            number of random bases to try for numbers >= 2^64
+     * @param pool
+     *            the pool to run the tests on
+     * @return {@code result[i]} is true iff the i-th number of the stream,
+     *         in encounter order, is very likely prime
+     * @requires rounds > 0 and [candidates is finite]
+     */
+    public static boolean[] isPrime(
+            Stream<? extends NaturalNumber> candidates, int rounds,
+            ForkJoinPool pool) {
+        assert candidates != null : "Violation of: candidates is not null";
+        assert pool != null : "Violation of: pool is not null";
+        return isPrime(candidates.toArray(NaturalNumber[]::new), rounds, pool);
+    }
+
+    /**
+     * Tests every number of {@code candidates} on the common fork-join pool.
+     *
+     * @param candidates
+     *            the numbers to test
+     * @return {@code result[i]} is true iff the i-th number of the stream,
+     *         in encounter order, is very likely prime
+     * @requires [candidates is finite]
+     */
+    public static boolean[] isPrime(
+            Stream<? extends NaturalNumber> candidates) {
+        return isPrime(candidates, MillerRabinTester.DEFAULT_ROUNDS,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tests every element of {@code candidates}.
+     *
+     * @param candidates
+     *            the numbers to test
+     * @param rounds
+     *            number of random bases to try for numbers >= 2^64
+     * @param pool
+     *            the pool to run the tests on
+     * @return the answers, in the order of {@code candidates}
+     */
+    private static boolean[] isPrime(NaturalNumber[] candidates, int rounds,
+            ForkJoinPool pool) {
+        assert rounds > 0 : "Violation of: rounds > 0";
+        boolean[] results = new boolean[candidates.length];
+        pool.invoke(new RangeTask(candidates, results, 0, candidates.length,
+                rounds));
+        return results;
+    }
+
+    /**
+     * Main method: compares testing a batch of random odd numbers one call at
+     * a time with {@code CryptoUtilities.isPrime2} against testing it as a
+     * batch. Both are run once untimed first, so JIT compilation counts
+     * against neither.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+
+        final int count = 2000;
+        final int bits = 512;
+        final long seed = 20_241_018L;
+        final double nanosPerMilli = 1e6;
+        RandomNaturalNumbers random = new RandomNaturalNumbers(seed);
+        List<NaturalNumber> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            NaturalNumber3 n = new NaturalNumber3(random.randomBits(bits));
+            if (!n.testBit(0)) {
+                n.increment();
+            }
+            batch.add(n);
+        }
+
+        for (int i = 0; i < count; i++) {
+            CryptoUtilities.isPrime2(batch.get(i));
+        }
+        isPrime(batch);
+
+        long start = System.nanoTime();
+        boolean[] single = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            single[i] = CryptoUtilities.isPrime2(batch.get(i));
+        }
+        long oneAtATime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        boolean[] together = isPrime(batch);
+        long batched = System.nanoTime() - start;
+
+        int primes = 0;
+        int disagreements = 0;
+        for (int i = 0; i < count; i++) {
+            if (together[i]) {
+                primes++;
+            }
+            if (single[i] != together[i]) {
+                disagreements++;
+            }
+        }
+        out.println(count + " random odd " + bits + "-bit numbers, " + primes
+                + " likely prime");
+        out.println("one at a time: " + Math.round(oneAtATime / nanosPerMilli)
+                + " ms");
+        out.println("as a batch:    " + Math.round(batched / nanosPerMilli)
+                + " ms");
+        if (disagreements > 0) {
+            out.println("*** " + disagreements + " answers differ");
+        }
+
+        out.close();
+    }
+
+}
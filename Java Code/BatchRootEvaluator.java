@@ -0,0 +1,339 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import components.naturalnumber.NaturalNumber;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Integer roots of many numbers at once.
+ *
+ * <p>
+ * A batch of (value, r) pairs is split recursively over the workers of a
+ * fork-join pool. Values below 2^63 take a fast path: a {@code double}
+ * estimate of the root, corrected by exact {@code long} arithmetic to the
+ * floor of the true root. Larger values go through the Newton iteration of
+ * {@code NaturalNumberRoot}, with work space numbers that each worker thread
+ * keeps from one value to the next instead of allocating them per call.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class BatchRootEvaluator {
+
+    /**
+     * Batches of at most this many values are handled by one worker.
+     */
+    private static final int GRAIN = 64;
+
+    /**
+     * Every number of at most this many decimal digits fits in a long.
+     */
+    private static final int LONG_DIGITS = 18;
+
+    /**
+     * Work space for {@code NaturalNumberRoot.root} of each thread.
+     */
+    private static final ThreadLocal<NaturalNumber[]> SCRATCH =
+            ThreadLocal.withInitial(
+                    () -> new NaturalNumber[NaturalNumberRoot.SCRATCH_SIZE]);
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private BatchRootEvaluator() {
+    }
+
+    /**
+     * Evaluates the roots of a contiguous range of a batch.
+     */
+    private static final class RangeTask extends RecursiveAction {
+
+        /**
+         * Serialization version, required since RecursiveAction is
+         * Serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The values, replaced by their roots.
+         */
+        private final NaturalNumber[] values;
+
+        /**
+         * The root to take of each value.
+         */
+        private final int[] roots;
+
+        /**
+         * First index of the range.
+         */
+        private final int low;
+
+        /**
+         * Index just past the range.
+         */
+        private final int high;
+
+        /**
+         * Constructor.
+         *
+         * @param values
+         *            the values
+         * @param roots
+         *            the root to take of each value
+         * @param low
+         *            first index of the range
+         * @param high
+         *            index just past the range
+         */
+        RangeTask(NaturalNumber[] values, int[] roots, int low, int high) {
+            this.values = values;
+            this.roots = roots;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.high - this.low <= GRAIN) {
+                for (int i = this.low; i < this.high; i++) {
+                    root(this.values[i], this.roots[i]);
+                }
+            } else {
+                int middle = (this.low + this.high) >>> 1;
+                invokeAll(
+                        new RangeTask(this.values, this.roots, this.low,
+                                middle),
+                        new RangeTask(this.values, this.roots, middle,
+                                this.high));
+            }
+        }
+
+    }
+
+    /**
+     * Reports whether {@code x^r > v}, without overflow.
+     *
+     * @param x
+     *            the base
+     * @param r
+     *            the exponent
+     * @param v
+     *            the bound
+     * @return true iff x^r > v
+     * @requires x > 0 and r > 0 and v >= 0
+     */
+    private static boolean powerExceeds(long x, int r, long v) {
+        long power = 1;
+        boolean exceeds = false;
+        for (int i = 0; !exceeds && i < r; i++) {
+            exceeds = power > v / x;
+            power *= x;
+        }
+        return exceeds || power > v;
+    }
+
+    /**
+     * Returns the {@code r}-th root of {@code v}.
+     *
+     * @param v
+     *            the number whose root to compute
+     * @param r
+     *            root
+     * @return the greatest x such that x^r <= v
+     * @requires v >= 0 and r >= 2
+     */
+    static long longRoot(long v, int r) {
+        long x = v;
+        if (v > 1) {
+            /*
+             * The double estimate is within a few units of the root; correct
+             * it exactly in both directions
+             */
+            x = Math.max(1, (long) Math.pow(v, 1.0 / r));
+            while (powerExceeds(x, r, v)) {
+                x--;
+            }
+            while (!powerExceeds(x + 1, r, v)) {
+                x++;
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Sets {@code n} to {@code v} using only kernel operations.
+     *
+     * @param n
+     *            the number to set
+     * @param v
+     *            the new value
+     * @replaces n
+     * @requires v >= 0
+     * @ensures n = v
+     */
+    private static void setFromLong(NaturalNumber n, long v) {
+        if (n instanceof NaturalNumber3) {
+            ((NaturalNumber3) n).setFromLong(v);
+        } else {
+            n.clear();
+            String digits = Long.toString(v);
+            for (int i = 0; i < digits.length(); i++) {
+                n.multiplyBy10(Character.digit(digits.charAt(i), 10));
+            }
+        }
+    }
+
+    /**
+     * Updates {@code n} to the {@code r}-th root of its incoming value, taking
+     * the {@code long} fast path when n is small enough.
+     *
+     * @param n
+     *            the number whose root to compute
+     * @param r
+     *            root
+     * @updates n
+     * @requires r >= 2
+     * @ensures n ^ (r) <= #n < (n + 1) ^ (r)
+     */
+    public static void root(NaturalNumber n, int r) {
+        assert n != null : "Violation of: n is  not null";
+        assert r >= 2 : "Violation of: r >= 2";
+        boolean small;
+        long v = 0;
+        if (n instanceof NaturalNumber3) {
+            NaturalNumber3 n3 = (NaturalNumber3) n;
+            small = n3.bitLength() < Long.SIZE;
+            if (small) {
+                v = n3.toLong();
+            }
+        } else {
+            String digits = n.toString();
+            small = digits.length() <= LONG_DIGITS;
+            if (small) {
+                v = Long.parseLong(digits);
+            }
+        }
+
+        if (small) {
+            setFromLong(n, longRoot(v, r));
+        } else {
+            NaturalNumber[] scratch = SCRATCH.get();
+            if (scratch[0] == null || scratch[0].getClass() != n.getClass()) {
+                for (int i = 0; i < scratch.length; i++) {
+                    scratch[i] = n.newInstance();
+                }
+            }
+            NaturalNumberRoot.root(n, r, scratch);
+        }
+    }
+
+    /**
+     * Replaces every {@code values[i]} by its {@code roots[i]}-th root,
+     * working on the workers of {@code pool}.
+     *
+     * @param values
+     *            the numbers whose roots to compute
+     * @param roots
+     *            the root to take of each number
+     * @param pool
+     *            the pool to run on
+     * @updates values
+     * @requires <pre>
+     * |values| = |roots|  and  [every roots[i] >= 2]  and
+     * [the entries of values are distinct objects]
+     * </pre>
+     * @ensures <pre>
+     * [for every i, values[i] ^ (roots[i]) <= #values[i] <
+     *   (values[i] + 1) ^ (roots[i])]
+     * </pre>
+     */
+    public static void rootAll(NaturalNumber[] values, int[] roots,
+            ForkJoinPool pool) {
+        assert values != null : "Violation of: values is not null";
+        assert roots != null : "Violation of: roots is not null";
+        assert pool != null : "Violation of: pool is not null";
+        assert values.length == roots.length : ""
+                + "Violation of: |values| = |roots|";
+        pool.invoke(new RangeTask(values, roots, 0, values.length));
+    }
+
+    /**
+     * Replaces every {@code values[i]} by its {@code roots[i]}-th root,
+     * working on the common fork-join pool.
+     *
+     * @param values
+     *            the numbers whose roots to compute
+     * @param roots
+     *            the root to take of each number
+     * @updates values
+     * @requires <pre>
+     * |values| = |roots|  and  [every roots[i] >= 2]  and
+     * [the entries of values are distinct objects]
+     * </pre>
+     * @ensures <pre>
+     * [for every i, values[i] ^ (roots[i]) <= #values[i] <
+     *   (values[i] + 1) ^ (roots[i])]
+     * </pre>
+     */
+    public static void rootAll(NaturalNumber[] values, int[] roots) {
+        rootAll(values, roots, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Main method: compares {@code NaturalNumberRoot.root} in a loop with
+     * {@code rootAll} on a batch of random values of mixed sizes.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+
+        final int count = 20_000;
+        final int maxBits = 200;
+        final int maxRoot = 6;
+        final long seed = 20_241_018L;
+        final double nanosPerMilli = 1e6;
+        RandomNaturalNumbers random = new RandomNaturalNumbers(seed);
+        SplittableRandom sizes = new SplittableRandom(seed);
+        NaturalNumber[] one = new NaturalNumber[count];
+        NaturalNumber[] batch = new NaturalNumber[count];
+        int[] roots = new int[count];
+        for (int i = 0; i < count; i++) {
+            one[i] = random.randomBits(1 + sizes.nextInt(maxBits));
+            batch[i] = new NaturalNumber3(one[i]);
+            roots[i] = 2 + sizes.nextInt(maxRoot - 1);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            NaturalNumberRoot.root(one[i], roots[i]);
+        }
+        long oneAtATime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        rootAll(batch, roots);
+        long batched = System.nanoTime() - start;
+
+        int disagreements = 0;
+        for (int i = 0; i < count; i++) {
+            if (one[i].compareTo(batch[i]) != 0) {
+                disagreements++;
+            }
+        }
+        out.println(count + " random values of up to " + maxBits + " bits");
+        out.println("one at a time: " + Math.round(oneAtATime / nanosPerMilli)
+                + " ms");
+        out.println("as a batch:    " + Math.round(batched / nanosPerMilli)
+                + " ms");
+        if (disagreements > 0) {
+            out.println("*** " + disagreements + " roots differ");
+        }
+
+        out.close();
+    }
+
+}
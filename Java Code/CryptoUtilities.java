@@ -1,7 +1,7 @@
+import java.util.concurrent.ForkJoinPool;
+
 import components.naturalnumber.NaturalNumber;
 import components.naturalnumber.NaturalNumber2;
-import components.random.Random;
-import components.random.Random1L;
 import components.simplereader.SimpleReader;
 import components.simplereader.SimpleReader1L;
 import components.simplewriter.SimpleWriter;
@@ -22,14 +22,37 @@ public final class CryptoUtilities {
     }
 
     /**
-     * Useful constant, not a magic number: 3.
+     * Returns a new number with the same dynamic type as {@code like} and the
+     * value {@code i}, so intermediate results stay in whatever representation
+     * the caller chose (e.g., the binary limbs of {@code NaturalNumber3}).
+     *
+     * @param like
+     *            number whose dynamic type to use
+     * @param i
+     *            value of the new number
+     * @return the new number
+     * @requires i >= 0
+     * @ensures valueLike = i
      */
-    private static final int THREE = 3;
+    private static NaturalNumber valueLike(NaturalNumber like, int i) {
+        NaturalNumber result = like.newInstance();
+        result.setFromInt(i);
+        return result;
+    }
 
     /**
-     * Pseudo-random number generator.
+     * Returns a copy of {@code n} with the same dynamic type as {@code n}.
+     *
+     * @param n
+     *            number to copy
+     * @return the copy
+     * @ensures copyOf = n
      */
-    private static final Random GENERATOR = new Random1L();
+    private static NaturalNumber copyOf(NaturalNumber n) {
+        NaturalNumber result = n.newInstance();
+        result.copyFrom(n);
+        return result;
+    }
 
     /**
      * Returns a random number uniformly distributed in the interval [0, n].
@@ -44,39 +67,14 @@ public final class CryptoUtilities {
      */
     public static NaturalNumber randomNumber(NaturalNumber n) {
         assert !n.isZero() : "Violation of: n > 0";
-        final int base = 10;
-        NaturalNumber result;
-        int d = n.divideBy10();
-        if (n.isZero()) {
-            /*
-             * Incoming n has only one digit and it is d, so generate a random
-             * number uniformly distributed in [0, d]
-             */
-            int x = (int) ((d + 1) * GENERATOR.nextDouble());
-            result = new NaturalNumber2(x);
-            n.multiplyBy10(d);
-        } else {
-            /*
-             * Incoming n has more than one digit, so generate a random number
-             * (NaturalNumber) uniformly distributed in [0, n], and another
-             * (int) uniformly distributed in [0, 9] (i.e., a random digit)
-             */
-            result = randomNumber(n);
-            int lastDigit = (int) (base * GENERATOR.nextDouble());
-            result.multiplyBy10(lastDigit);
-            n.multiplyBy10(d);
-            if (result.compareTo(n) > 0) {
-                /*
-                 * In this case, we need to try again because generated number
-                 * is greater than n; the recursive call's argument is not
-                 * "smaller" than the incoming value of n, but this recursive
-                 * call has no more than a 90% chance of being made (and for
-                 * large n, far less than that), so the probability of
-                 * termination is 1
-                 */
-                result = randomNumber(n);
-            }
-        }
+
+        /*
+         * Each thread draws from its own generator, which fills whole
+         * machine words and rejects draws above n, so the cost is
+         * proportional to the number of words in n rather than its digits
+         */
+        NaturalNumber result = n.newInstance();
+        result.copyFrom(RandomNaturalNumbers.current().uniform(n));
         return result;
     }
 
@@ -95,19 +93,11 @@ public final class CryptoUtilities {
 
         /*
          * Use Euclid's algorithm; in pseudocode: if m = 0 then GCD(n, m) = n
-         * else GCD(n, m) = GCD(m, n mod m)
+         * else GCD(n, m) = GCD(m, n mod m); Lehmer's variant runs it without
+         * recursion and does most steps on the leading word of n and m
          */
 
-        if (m.isZero()) {
-            m.clear();
-        } else {
-            NaturalNumber remainder = n.divide(m);
-            reduceToGCD(m, remainder);
-            n.transferFrom(m);
-        }
-
-        // TODO - fill in body
-
+        NaturalNumberGCD.lehmerGCD(n, m);
     }
 
     /**
@@ -120,24 +110,49 @@ public final class CryptoUtilities {
      */
     public static boolean isEven(NaturalNumber n) {
 
-        boolean isFT = false;
-        NaturalNumber two = new NaturalNumber2(2);
-        NaturalNumber remainder = n.divide(two);
-        if (remainder.isZero()) {
-            n.multiply(two);
-            isFT = true;
-        } else {
-            n.multiply(two);
-            n.increment();
-        }
-        return isFT;
-
-        // TODO - fill in body
-
         /*
-         * This line added just to make the program compilable. Should be
-         * replaced with appropriate return statement.
+         * Parity is the lowest bit, so there is no need to divide by 2
          */
+        return NaturalNumberBits.isEven(n);
+    }
+
+    /**
+     * Updates n to {@code n * k mod m}.
+     *
+     * @param n
+     *            first factor
+     * @param k
+     *            second factor
+     * @param m
+     *            the modulus
+     * @updates n
+     * @requires m > 0
+     * @ensures n = #n * k mod m
+     */
+    private static void multiplyMod(NaturalNumber n, NaturalNumber k,
+            NaturalNumber m) {
+        n.multiply(k);
+        n.transferFrom(n.divide(m));
+    }
+
+    /**
+     * Updates n to {@code n^2 mod m}, using {@code scratch} for the copy of n
+     * that the multiplication needs.
+     *
+     * @param n
+     *            number to square
+     * @param scratch
+     *            work space, same dynamic type as n
+     * @param m
+     *            the modulus
+     * @updates n, scratch
+     * @requires m > 0
+     * @ensures n = #n * #n mod m
+     */
+    private static void squareMod(NaturalNumber n, NaturalNumber scratch,
+            NaturalNumber m) {
+        scratch.copyFrom(n);
+        multiplyMod(n, scratch, m);
     }
 
     /**
@@ -160,32 +175,47 @@ public final class CryptoUtilities {
         /*
          * Use the fast-powering algorithm as previously discussed in class,
          * with the additional feature that every multiplication is followed
-         * immediately by "reducing the result modulo m"
+         * immediately by "reducing the result modulo m"; odd moduli (every
+         * RSA modulus and every candidate prime) use Montgomery form instead,
+         * which reduces without dividing by m
          */
 
-        // TODO - fill in body
-        NaturalNumber two = new NaturalNumber2(2);
-        NaturalNumber pHolder = new NaturalNumber2(p);
-        NaturalNumber pHolder2 = new NaturalNumber2(p);
-
-        if (p.isZero()) {
-            n.setFromInt(1);
-        } else if (isEven(p)) {
-            pHolder.divide(two);
-            powerMod(n, pHolder, m);
-            NaturalNumber nHolder = new NaturalNumber2(n);
-            n.multiply(nHolder);
-            n.transferFrom(n.divide(m));
+        if (!isEven(m)) {
+            MontgomeryModulus.forModulus(m).powerMod(n, p);
         } else {
-            pHolder2.divide(two);
-            NaturalNumber nHolder3 = new NaturalNumber2(n);
-            powerMod(n, pHolder2, m);
-            NaturalNumber nHolder = new NaturalNumber2(n);
-            n.multiply(nHolder);
-            n.transferFrom(n.divide(m));
-            NaturalNumber nHolder2 = nHolder3.divide(m);
-            nHolder2.multiply(n);
-            n.transferFrom(nHolder2.divide(m));
+            /*
+             * Iterative sliding-window exponentiation: one squaring per bit
+             * of p and one multiplication per window, each by a precomputed
+             * odd power of n; the scratch copy used for squaring is reused so
+             * no bit of p allocates a new number
+             */
+            ExponentRecoding exponent = new ExponentRecoding(p);
+            NaturalNumber scratch = n.newInstance();
+            NaturalNumber[] table = new NaturalNumber[exponent.tableSize()];
+            table[0] = n.divide(m);
+            if (table.length > 1) {
+                NaturalNumber square = copyOf(table[0]);
+                squareMod(square, scratch, m);
+                for (int i = 1; i < table.length; i++) {
+                    table[i] = copyOf(table[i - 1]);
+                    multiplyMod(table[i], square, m);
+                }
+            }
+
+            if (exponent.windowCount() == 0) {
+                n.setFromInt(1);
+            } else {
+                n.copyFrom(table[exponent.tableIndex(0)]);
+                for (int w = 1; w < exponent.windowCount(); w++) {
+                    for (int i = 0; i < exponent.squaringsBefore(w); i++) {
+                        squareMod(n, scratch, m);
+                    }
+                    multiplyMod(n, table[exponent.tableIndex(w)], m);
+                }
+            }
+            for (int i = 0; i < exponent.trailingSquarings(); i++) {
+                squareMod(n, scratch, m);
+            }
         }
     }
 
@@ -213,28 +243,29 @@ public final class CryptoUtilities {
         assert w.compareTo(n) < 0 : "Violation of: w < n - 1";
         n.increment();
 
-        NaturalNumber one = new NaturalNumber2(1);
-        NaturalNumber two = new NaturalNumber2(2);
-        NaturalNumber wHolder2 = new NaturalNumber2(w);
-        NaturalNumber nHolder = new NaturalNumber2(n);
-        NaturalNumber wHolder = new NaturalNumber2(w);
+        NaturalNumber one = valueLike(n, 1);
+        NaturalNumber wHolder2 = copyOf(w);
+        NaturalNumber nHolder = copyOf(n);
+        NaturalNumber wHolder = copyOf(w);
 
         boolean result = false;
-        powerMod(wHolder2, two, n);
+        multiplyMod(wHolder2, w, n);
 
         nHolder.decrement();
-        powerMod(wHolder, nHolder, n);
+        if (isEven(n)) {
+            powerMod(wHolder, nHolder, n);
+        } else {
+            /*
+             * The exponent n - 1 is the same for every witness of n, so the
+             * context of the previous call can usually be reused
+             */
+            ModularContext.forPower(n, nHolder).power(wHolder);
+        }
 
         if (wHolder2.compareTo(one) == 0 || wHolder.compareTo(one) != 0) {
             result = true;
         }
 
-        // TODO - fill in body
-
-        /*
-         * This line added just to make the program compilable. Should be
-         * replaced with appropriate return statement.
-         */
         return result;
     }
 
@@ -255,7 +286,7 @@ public final class CryptoUtilities {
     public static boolean isPrime1(NaturalNumber n) {
         assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
         boolean isPrime;
-        if (n.compareTo(new NaturalNumber2(THREE)) <= 0) {
+        if (NaturalNumberBits.bitLength(n) <= 2) {
             /*
              * 2 and 3 are primes
              */
@@ -270,7 +301,7 @@ public final class CryptoUtilities {
              * odd n >= 5: simply check whether 2 is a witness that n is
              * composite (which works surprisingly well :-)
              */
-            isPrime = !isWitnessToCompositeness(new NaturalNumber2(2), n);
+            isPrime = !isWitnessToCompositeness(valueLike(n, 2), n);
         }
         return isPrime;
     }
@@ -292,44 +323,62 @@ public final class CryptoUtilities {
     public static boolean isPrime2(NaturalNumber n) {
         assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
 
-        /*
-         * Use the ability to generate random numbers (provided by the
-         * randomNumber method above) to generate several witness candidates --
-         * say, 10 to 50 candidates -- guessing that n is prime only if none of
-         * these candidates is a witness to n being composite (based on fact #3
-         * as described in the project description); use the code for isPrime1
-         * as a guide for how to do this, and pay attention to the requires
-         * clause of isWitnessToCompositeness
-         */
-
-        NaturalNumber nHolder = new NaturalNumber2(n);
-        NaturalNumber two = new NaturalNumber2(2);
-        NaturalNumber newNumber = new NaturalNumber2();
-
-        boolean result = false;
-        for (int i = 0; i < 50; i++) {
-            if (nHolder.compareTo(two) < 0) {
-                newNumber = new NaturalNumber2(n);
-            } else {
-                newNumber = randomNumber(nHolder);
-            }
-            if (n.compareTo(newNumber) <= 0) {
-                result = true;
-            } else if (isEven(n)) {
-                result = false;
-            } else {
-                result = !isWitnessToCompositeness(two, n);
-            }
-
-        }
+        return isPrime2(n, MillerRabinTester.DEFAULT_ROUNDS);
+    }
 
-        // TODO - fill in body
+    /**
+     * Reports whether n is a prime; may be wrong with "low" probability.
+     * Numbers below 2^64 are always answered correctly; for larger ones each
+     * round lets a composite through with probability at most 1/4.
+     *
+     * @param n
+     *            number to be checked
+     * @param rounds
+     *            number of random Miller-Rabin bases to try when n >= 2^64
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1 and rounds > 0
+     * @ensures <pre>
+     * isPrime2 = [n is a prime number, with probability of error at most
+     *         4^(-rounds) if it is reported to be prime, and no chance of
+     *         error if it is reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime2(NaturalNumber n, int rounds) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+        assert rounds > 0 : "Violation of: rounds > 0";
 
         /*
-         * This line added just to make the program compilable. Should be
-         * replaced with appropriate return statement.
+         * Miller-Rabin: n - 1 = 2^s * d is split once, and each base a is a
+         * witness unless a^d = 1 or a^(2^r * d) = n - 1 for some r < s; the
+         * bases 2, 3, ..., 37 are exact below 2^64, beyond which random bases
+         * are used
          */
-        return result;
+        return MillerRabinTester.isProbablePrime(n, rounds);
+    }
+
+    /**
+     * Reports whether n is a prime; may be wrong with "low" probability. Same
+     * test as {@code isPrime2}, but the Miller-Rabin rounds run concurrently on
+     * the common fork-join pool, each worker drawing bases from its own random
+     * source, and the check returns as soon as any round finds a witness.
+     *
+     * @param n
+     *            number to be checked
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1
+     * @ensures <pre>
+     * isPrime3 = [n is a prime number, with small probability of error
+     *         if it is reported to be prime, and no chance of error if it is
+     *         reported to be composite]
+     * </pre>
+     */
+    public static boolean isPrime3(NaturalNumber n) {
+        assert n.compareTo(new NaturalNumber2(1)) > 0 : "Violation of: n > 1";
+
+        return MillerRabinTester.isProbablePrime(n,
+                MillerRabinTester.DEFAULT_ROUNDS, ForkJoinPool.commonPool());
     }
 
     /**
@@ -346,20 +395,20 @@ public final class CryptoUtilities {
 
         /*
          * Use isPrime2 to check numbers, starting at n and increasing through
-         * the odd numbers only (why?), until n is likely prime
+         * the odd numbers only (why?), until n is likely prime; a sieve over
+         * the first few thousand odd primes discards most candidates before
+         * isPrime2 has to exponentiate
          */
 
-        NaturalNumber two = new NaturalNumber2(2);
-
         if (isEven(n)) {
             n.increment();
         }
-        while (!isPrime2(n)) {
-            n.add(two);
+        SmallPrimeSieve sieve = new SmallPrimeSieve(n);
+        NaturalNumber candidate = sieve.nextSurvivor();
+        while (!isPrime2(candidate)) {
+            candidate = sieve.nextSurvivor();
         }
-
-        // TODO - fill in body
-
+        n.copyFrom(candidate);
     }
 
     /**
@@ -378,7 +427,7 @@ public final class CryptoUtilities {
          */
         final int testValue = 17;
         final int testSamples = 100000;
-        NaturalNumber test = new NaturalNumber2(testValue);
+        NaturalNumber test = new NaturalNumber3(testValue);
         int[] count = new int[testValue + 1];
         for (int i = 0; i < count.length; i++) {
             count[i] = 0;
@@ -400,7 +449,7 @@ public final class CryptoUtilities {
          */
         while (true) {
             out.print("n = ");
-            NaturalNumber n = new NaturalNumber2(in.nextLine());
+            NaturalNumber n = new NaturalNumber3(in.nextLine());
             if (n.compareTo(new NaturalNumber2(2)) < 0) {
                 out.println("Bye!");
                 break;
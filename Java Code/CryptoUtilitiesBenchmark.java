@@ -0,0 +1,258 @@
+import java.lang.management.ManagementFactory;
+
+import components.naturalnumber.NaturalNumber;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Benchmarks for the {@code CryptoUtilities} primitives: {@code powerMod},
+ * {@code isPrime2}, {@code generateNextLikelyPrime}, {@code reduceToGCD} and
+ * {@code randomNumber}.
+ *
+ * <p>
+ * Every operation is run on operands of 64 to 4096 bits, drawn with a fixed
+ * seed so runs are comparable. Each measurement warms up first, then times
+ * batches until a time budget is used up, and reports throughput and the
+ * bytes allocated per operation, as counted by the JVM for the benchmark
+ * thread. The output is one tab-separated line per operation and size, so
+ * the output of two runs can be diffed or pasted side by side to judge a
+ * change against a baseline. Sizes can be given on the command line, e.g.
+ * {@code java CryptoUtilitiesBenchmark 512 1024}.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class CryptoUtilitiesBenchmark {
+
+    /**
+     * Operand sizes in bits when none are given.
+     */
+    private static final int[] DEFAULT_SIZES = { 64, 128, 256, 512, 1024,
+            2048, 4096 };
+
+    /**
+     * Largest default size for {@code generateNextLikelyPrime}, which takes
+     * seconds per call beyond it; larger sizes run only when asked for.
+     */
+    private static final int PRIME_SEARCH_LIMIT = 2048;
+
+    /**
+     * Number of operand sets per operation and size, used in turn.
+     */
+    private static final int OPERAND_SETS = 8;
+
+    /**
+     * Seed for the operands.
+     */
+    private static final long SEED = 20_241_018L;
+
+    /**
+     * Warmup time per measurement, in nanoseconds.
+     */
+    private static final long WARMUP_NANOS = 500_000_000L;
+
+    /**
+     * Measurement time per measurement, in nanoseconds.
+     */
+    private static final long MEASURE_NANOS = 1_000_000_000L;
+
+    /**
+     * Per-thread allocation counter of the JVM.
+     */
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory
+                    .getThreadMXBean();
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private CryptoUtilitiesBenchmark() {
+    }
+
+    /**
+     * One benchmarked operation.
+     */
+    private interface Operation {
+
+        /**
+         * Runs the operation once on operand set {@code i}.
+         *
+         * @param i
+         *            index of the operand set
+         */
+        void run(int i);
+
+    }
+
+    /**
+     * Sink for results, so the JIT cannot drop the benchmarked calls.
+     */
+    private static int sink;
+
+    /**
+     * Returns {@code OPERAND_SETS} random numbers of exactly {@code bits}
+     * bits.
+     *
+     * @param bits
+     *            size of the numbers
+     * @param random
+     *            random source
+     * @param odd
+     *            whether the numbers must be odd
+     * @return the numbers
+     */
+    private static NaturalNumber3[] operands(int bits,
+            RandomNaturalNumbers random, boolean odd) {
+        NaturalNumber3[] result = new NaturalNumber3[OPERAND_SETS];
+        for (int i = 0; i < OPERAND_SETS; i++) {
+            result[i] = new NaturalNumber3(random.randomBits(bits - 1));
+            NaturalNumber3 top = new NaturalNumber3(1);
+            top.shiftLeft(bits - 1);
+            result[i].add(top);
+            if (odd && !result[i].testBit(0)) {
+                result[i].increment();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs {@code operation} on successive operand sets until {@code nanos}
+     * have passed, and returns the number of runs.
+     *
+     * @param operation
+     *            the operation
+     * @param nanos
+     *            time budget
+     * @return number of runs
+     */
+    private static long runFor(Operation operation, long nanos) {
+        long count = 0;
+        long start = System.nanoTime();
+        do {
+            operation.run((int) (count % OPERAND_SETS));
+            count++;
+        } while (System.nanoTime() - start < nanos);
+        return count;
+    }
+
+    /**
+     * Measures {@code operation} and prints one line with its throughput and
+     * allocation per operation.
+     *
+     * @param out
+     *            the output stream
+     * @param name
+     *            name of the operation
+     * @param bits
+     *            operand size
+     * @param operation
+     *            the operation
+     */
+    private static void measure(SimpleWriter out, String name, int bits,
+            Operation operation) {
+        runFor(operation, WARMUP_NANOS);
+
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long count = runFor(operation, MEASURE_NANOS);
+        long elapsed = System.nanoTime() - start;
+        long bytes = THREADS.getThreadAllocatedBytes(thread) - bytesBefore;
+
+        final double nanosPerSecond = 1e9;
+        double opsPerSecond = count * nanosPerSecond / elapsed;
+        out.println(name + "\t" + bits + "\t"
+                + String.format("%.1f", opsPerSecond) + " ops/s\t"
+                + bytes / count + " B/op");
+    }
+
+    /**
+     * Runs every benchmark at operand size {@code bits}.
+     *
+     * @param out
+     *            the output stream
+     * @param bits
+     *            operand size
+     * @param primeSearch
+     *            whether to include {@code generateNextLikelyPrime}
+     */
+    private static void benchmarkSize(SimpleWriter out, int bits,
+            boolean primeSearch) {
+        RandomNaturalNumbers random = new RandomNaturalNumbers(SEED + bits);
+        NaturalNumber3[] left = operands(bits, random, false);
+        NaturalNumber3[] right = operands(bits, random, false);
+        NaturalNumber3[] odd = operands(bits, random, true);
+        NaturalNumber3[] even = operands(bits, random, false);
+        for (NaturalNumber3 e : even) {
+            if (e.testBit(0)) {
+                e.increment();
+            }
+        }
+        NaturalNumber3 n = new NaturalNumber3();
+
+        measure(out, "powerMod (odd m)", bits, i -> {
+            n.copyFrom(left[i]);
+            CryptoUtilities.powerMod(n, right[i], odd[i]);
+            sink += n.limbLength();
+        });
+        measure(out, "powerMod (even m)", bits, i -> {
+            n.copyFrom(left[i]);
+            CryptoUtilities.powerMod(n, right[i], even[i]);
+            sink += n.limbLength();
+        });
+        measure(out, "isPrime2", bits, i -> {
+            if (CryptoUtilities.isPrime2(odd[i])) {
+                sink++;
+            }
+        });
+        if (primeSearch) {
+            measure(out, "generateNextLikelyPrime", bits, i -> {
+                n.copyFrom(left[i]);
+                CryptoUtilities.generateNextLikelyPrime(n);
+                sink += n.limbLength();
+            });
+        }
+        NaturalNumber3 m = new NaturalNumber3();
+        measure(out, "reduceToGCD", bits, i -> {
+            n.copyFrom(left[i]);
+            m.copyFrom(right[i]);
+            CryptoUtilities.reduceToGCD(n, m);
+            sink += n.limbLength();
+        });
+        measure(out, "randomNumber", bits, i -> {
+            if (CryptoUtilities.randomNumber(left[i]).isZero()) {
+                sink++;
+            }
+        });
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            operand sizes in bits; the default sizes if none are given
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+
+        int[] sizes = DEFAULT_SIZES;
+        boolean explicit = args.length > 0;
+        if (explicit) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        out.println("operation\tbits\tthroughput\tallocation");
+        for (int bits : sizes) {
+            benchmarkSize(out, bits, explicit || bits <= PRIME_SEARCH_LIMIT);
+        }
+        out.println("(checksum " + sink + ")");
+
+        out.close();
+    }
+
+}
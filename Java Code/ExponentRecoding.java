@@ -0,0 +1,177 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Sliding-window recoding of an exponent for left-to-right modular
+ * exponentiation.
+ *
+ * <p>
+ * The exponent is read from its most significant bit down and cut into
+ * windows of at most {@code windowSize()} bits that start and end with a 1.
+ * Each window becomes a pair (number of squarings, odd digit), so evaluating
+ * {@code b^p} takes one squaring per bit plus one multiplication by a
+ * precomputed odd power {@code b^digit} per window, instead of one
+ * multiplication per 1 bit. The window size grows with the bit length of the
+ * exponent, trading the cost of the odd-power table against the number of
+ * windows.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class ExponentRecoding {
+
+    /**
+     * Largest exponent bit length served by each window size: exponents of up
+     * to {@code WINDOW_LIMITS[k - 1]} bits use windows of {@code k} bits.
+     */
+    private static final int[] WINDOW_LIMITS = { 7, 25, 81, 241, 673, 1793 };
+
+    /**
+     * Window size in bits.
+     */
+    private final int windowSize;
+
+    /**
+     * Squarings to do before multiplying in each window's digit.
+     */
+    private final int[] squarings;
+
+    /**
+     * Odd value of each window, most significant window first.
+     */
+    private final int[] digits;
+
+    /**
+     * Number of windows.
+     */
+    private final int count;
+
+    /**
+     * Squarings to do after the last window, one per trailing 0 bit.
+     */
+    private final int trailingSquarings;
+
+    /**
+     * Constructor.
+     *
+     * @param p
+     *            the exponent to recode
+     */
+    public ExponentRecoding(NaturalNumber p) {
+        assert p != null : "Violation of: p is not null";
+        NaturalNumber3 exponent = NaturalNumber3.asNaturalNumber3(p);
+        int bits = exponent.bitLength();
+        this.windowSize = windowSizeFor(bits);
+
+        int[] sq = new int[bits];
+        int[] dg = new int[bits];
+        int windows = 0;
+        int pending = 0;
+        int i = bits - 1;
+        while (i >= 0) {
+            if (!exponent.testBit(i)) {
+                pending++;
+                i--;
+            } else {
+                /*
+                 * Longest window starting at bit i that fits and ends in a 1
+                 */
+                int j = Math.max(i - this.windowSize + 1, 0);
+                while (!exponent.testBit(j)) {
+                    j++;
+                }
+                int digit = 0;
+                for (int b = i; b >= j; b--) {
+                    digit = 2 * digit + (exponent.testBit(b) ? 1 : 0);
+                }
+                sq[windows] = pending + (i - j + 1);
+                dg[windows] = digit;
+                windows++;
+                pending = 0;
+                i = j - 1;
+            }
+        }
+        this.squarings = sq;
+        this.digits = dg;
+        this.count = windows;
+        this.trailingSquarings = pending;
+    }
+
+    /**
+     * Returns the window size used for an exponent of the given bit length.
+     *
+     * @param bits
+     *            bit length of the exponent
+     * @return window size in bits, between 1 and 7
+     */
+    static int windowSizeFor(int bits) {
+        int k = 1;
+        while (k <= WINDOW_LIMITS.length && bits > WINDOW_LIMITS[k - 1]) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Returns the window size in bits.
+     *
+     * @return the window size
+     */
+    int windowSize() {
+        return this.windowSize;
+    }
+
+    /**
+     * Returns the number of entries needed in the odd-power table, which
+     * holds {@code b^1, b^3, ..., b^(2 * tableSize() - 1)}.
+     *
+     * @return the table size
+     */
+    int tableSize() {
+        return 1 << (this.windowSize - 1);
+    }
+
+    /**
+     * Returns the number of windows.
+     *
+     * @return the number of windows
+     */
+    int windowCount() {
+        return this.count;
+    }
+
+    /**
+     * Returns the number of squarings before window {@code w} is multiplied
+     * in.
+     *
+     * @param w
+     *            window index, 0 being the most significant
+     * @return the number of squarings
+     * @requires 0 <= w < windowCount()
+     */
+    int squaringsBefore(int w) {
+        return this.squarings[w];
+    }
+
+    /**
+     * Returns the odd-power table index for window {@code w}, i.e., the index
+     * of {@code b^digit} in the table.
+     *
+     * @param w
+     *            window index, 0 being the most significant
+     * @return the table index of the window's digit
+     * @requires 0 <= w < windowCount()
+     */
+    int tableIndex(int w) {
+        return this.digits[w] / 2;
+    }
+
+    /**
+     * Returns the number of squarings after the last window.
+     *
+     * @return the number of trailing squarings
+     */
+    int trailingSquarings() {
+        return this.trailingSquarings;
+    }
+
+}
@@ -0,0 +1,412 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Miller-Rabin probable-prime test for one odd number {@code n}.
+ *
+ * <p>
+ * The constructor writes {@code n - 1 = 2^s * d} with {@code d} odd, sets up
+ * Montgomery arithmetic modulo {@code n} and recodes {@code d} for
+ * sliding-window exponentiation, all once; each base tried afterwards costs
+ * one exponentiation {@code a^d} plus at most {@code s - 1} squarings. For
+ * {@code n < 2^64} the fixed bases 2, 3, 5, ..., 37 make the answer exact;
+ * larger {@code n} are tested with randomly chosen bases, each of which lets
+ * a composite through with probability at most 1/4.
+ * </p>
+ *
+ * <p>
+ * Bases are independent of each other, so {@link #isProbablePrime(int,
+ * ForkJoinPool)} spreads them over the workers of a fork-join pool, each with
+ * its own split of a {@link RandomNaturalNumbers} generator, and stops every
+ * worker as soon as any base proves n composite.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class MillerRabinTester {
+
+    /**
+     * Bases that decide primality exactly for every n below
+     * 3,317,044,064,679,887,385,961,981, which is more than 2^64.
+     */
+    private static final int[] DETERMINISTIC_BASES = { 2, 3, 5, 7, 11, 13, 17,
+        19, 23, 29, 31, 37 };
+
+    /**
+     * Largest bit length for which {@code DETERMINISTIC_BASES} is exact.
+     */
+    private static final int DETERMINISTIC_BITS = 64;
+
+    /**
+     * Number of random bases tried by default: a composite survives all of
+     * them with probability at most 4^(-32) = 2^(-64).
+     */
+    public static final int DEFAULT_ROUNDS = 32;
+
+    /**
+     * The number being tested.
+     */
+    private final NaturalNumber3 n;
+
+    /**
+     * Number of factors of 2 in n - 1.
+     */
+    private final int s;
+
+    /**
+     * Odd part d of n - 1, recoded for exponentiation.
+     */
+    private final ExponentRecoding d;
+
+    /**
+     * Montgomery arithmetic modulo n.
+     */
+    private final MontgomeryModulus modulus;
+
+    /**
+     * 1 in Montgomery form.
+     */
+    private final int[] one;
+
+    /**
+     * n - 1 in Montgomery form.
+     */
+    private final int[] minusOne;
+
+    /**
+     * n - 4, the largest value of {@code a - 2} for a base a in [2, n - 2].
+     */
+    private final NaturalNumber3 baseRange;
+
+    /**
+     * Tries the bases with indices {@code first}, {@code first + stride}, ...
+     * below {@code count}, stopping early once any base anywhere has proved n
+     * composite.
+     */
+    private final class WitnessTask extends RecursiveAction {
+
+        /**
+         * Serialization version, required since RecursiveAction is
+         * Serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Index of the first base of this task.
+         */
+        private final int first;
+
+        /**
+         * Distance between consecutive base indices of this task.
+         */
+        private final int stride;
+
+        /**
+         * Number of bases over all tasks.
+         */
+        private final int count;
+
+        /**
+         * Random source owned by this task.
+         */
+        private final RandomNaturalNumbers random;
+
+        /**
+         * Set by whichever task first finds a witness.
+         */
+        private final AtomicBoolean composite;
+
+        /**
+         * Constructor.
+         *
+         * @param first
+         *            index of the first base of this task
+         * @param stride
+         *            distance between consecutive base indices
+         * @param count
+         *            number of bases over all tasks
+         * @param random
+         *            random source for this task alone
+         * @param composite
+         *            shared flag recording that a witness was found
+         */
+        WitnessTask(int first, int stride, int count,
+                RandomNaturalNumbers random, AtomicBoolean composite) {
+            this.first = first;
+            this.stride = stride;
+            this.count = count;
+            this.random = random;
+            this.composite = composite;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = this.first; i < this.count
+                    && !this.composite.get(); i += this.stride) {
+                if (MillerRabinTester.this.isWitnessForRound(i,
+                        this.random)) {
+                    this.composite.set(true);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param n
+     *            the number to test
+     * @requires n > 3 and [n is odd]
+     */
+    public MillerRabinTester(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        this.n = new NaturalNumber3(n);
+        assert this.n.bitLength() > 2 : "Violation of: n > 3";
+        assert this.n.testBit(0) : "Violation of: n is odd";
+
+        NaturalNumber3 nMinusOne = new NaturalNumber3(this.n);
+        nMinusOne.decrement();
+        this.s = nMinusOne.lowestSetBit();
+        NaturalNumber3 oddPart = new NaturalNumber3(nMinusOne);
+        oddPart.shiftRight(this.s);
+        this.d = new ExponentRecoding(oddPart);
+
+        this.modulus = MontgomeryModulus.forModulus(this.n);
+        this.one = new int[this.modulus.size()];
+        this.modulus.setOne(this.one);
+        this.minusOne = this.modulus.toMontgomery(nMinusOne);
+
+        this.baseRange = new NaturalNumber3(nMinusOne);
+        this.baseRange.decrement();
+        this.baseRange.decrement();
+        this.baseRange.decrement();
+    }
+
+    /**
+     * Reports whether the test is exact for n, i.e., whether n < 2^64 so the
+     * fixed bases decide primality.
+     *
+     * @return true iff n < 2^64
+     */
+    private boolean isDeterministic() {
+        return this.n.bitLength() <= DETERMINISTIC_BITS;
+    }
+
+    /**
+     * Returns a base uniformly distributed in [2, n - 2], drawn from
+     * {@code random}.
+     *
+     * @param random
+     *            the random source
+     * @return the random base
+     */
+    private NaturalNumber randomBase(RandomNaturalNumbers random) {
+        NaturalNumber a = random.uniform(this.baseRange);
+        a.increment();
+        a.increment();
+        return a;
+    }
+
+    /**
+     * Runs round {@code i} of the test: for n < 2^64 with the i-th fixed base,
+     * otherwise with a random base from {@code random}.
+     *
+     * @param i
+     *            the round
+     * @param random
+     *            random source for random bases
+     * @return true iff the round found a witness that n is composite
+     */
+    private boolean isWitnessForRound(int i, RandomNaturalNumbers random) {
+        boolean witness;
+        if (this.isDeterministic()) {
+            /*
+             * Bases at or above n - 1 say nothing; the small n they would
+             * apply to are settled by the smaller bases
+             */
+            NaturalNumber3 a = new NaturalNumber3(DETERMINISTIC_BASES[i] - 2);
+            boolean inRange = a.compareTo(this.baseRange) <= 0;
+            a.increment();
+            a.increment();
+            witness = inRange && this.isWitness(a);
+        } else {
+            witness = this.isWitness(this.randomBase(random));
+        }
+        return witness;
+    }
+
+    /**
+     * Reports whether {@code a} is a witness that n is composite, i.e.,
+     * whether {@code a^d mod n /= 1} and {@code a^(2^r * d) mod n /= n - 1}
+     * for every {@code 0 <= r < s}.
+     *
+     * @param a
+     *            the base
+     * @return true iff a is a Miller-Rabin witness that n is composite
+     * @requires 1 < a < n - 1
+     */
+    public boolean isWitness(NaturalNumber a) {
+        assert a != null : "Violation of: a is not null";
+        int[] x = new int[this.modulus.size()];
+        this.modulus.power(this.modulus.toMontgomery(a), this.d, x);
+        int[] scratch = this.modulus.workSpace(0)[0];
+
+        boolean witness = !equal(x, this.one) && !equal(x, this.minusOne);
+        boolean rootOfOne = false;
+        for (int r = 1; witness && !rootOfOne && r < this.s; r++) {
+            this.modulus.multiply(x, x, x, scratch);
+            if (equal(x, this.minusOne)) {
+                witness = false;
+            } else {
+                /*
+                 * If x is now 1 then a nontrivial square root of 1 has been
+                 * found, and no later squaring can reach n - 1
+                 */
+                rootOfOne = equal(x, this.one);
+            }
+        }
+        return witness;
+    }
+
+    /**
+     * Reports whether n is a prime; may be wrong with "low" probability.
+     * Numbers below 2^64 are always answered correctly; larger ones are
+     * checked against {@code rounds} random bases.
+     *
+     * @param rounds
+     *            number of random bases to try when n >= 2^64
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires rounds > 0
+     */
+    public boolean isProbablePrime(int rounds) {
+        assert rounds > 0 : "Violation of: rounds > 0";
+        boolean prime = true;
+        int count = rounds;
+        if (this.isDeterministic()) {
+            count = DETERMINISTIC_BASES.length;
+        }
+        RandomNaturalNumbers random = RandomNaturalNumbers.current();
+        for (int i = 0; prime && i < count; i++) {
+            prime = !this.isWitnessForRound(i, random);
+        }
+        return prime;
+    }
+
+    /**
+     * Reports whether n is a prime; may be wrong with "low" probability. The
+     * bases are tried concurrently on the workers of {@code pool}, and all
+     * workers stop as soon as one base proves n composite.
+     *
+     * @param rounds
+     *            number of random bases to try when n >= 2^64
+     * @param pool
+     *            the pool to run the rounds on
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires rounds > 0
+     */
+    public boolean isProbablePrime(int rounds, ForkJoinPool pool) {
+        assert rounds > 0 : "Violation of: rounds > 0";
+        assert pool != null : "Violation of: pool is not null";
+        int count = rounds;
+        if (this.isDeterministic()) {
+            count = DETERMINISTIC_BASES.length;
+        }
+        int workers = Math.min(pool.getParallelism(), count);
+        RandomNaturalNumbers root = RandomNaturalNumbers.current();
+        AtomicBoolean composite = new AtomicBoolean(false);
+        WitnessTask[] tasks = new WitnessTask[workers];
+        for (int w = 0; w < workers; w++) {
+            tasks[w] = new WitnessTask(w, workers, count, root.split(),
+                    composite);
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        return !composite.get();
+    }
+
+    /**
+     * Reports whether n is a prime; may be wrong with "low" probability.
+     *
+     * @param n
+     *            number to be checked
+     * @param rounds
+     *            number of random bases to try when n >= 2^64
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1 and rounds > 0
+     */
+    public static boolean isProbablePrime(NaturalNumber n, int rounds) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber3 nn = NaturalNumber3.asNaturalNumber3(n);
+        assert nn.bitLength() > 1 : "Violation of: n > 1";
+        boolean prime;
+        if (nn.bitLength() <= 2) {
+            /*
+             * 2 and 3 are primes
+             */
+            prime = true;
+        } else if (!nn.testBit(0)) {
+            /*
+             * evens are composite
+             */
+            prime = false;
+        } else {
+            prime = new MillerRabinTester(nn).isProbablePrime(rounds);
+        }
+        return prime;
+    }
+
+    /**
+     * Reports whether n is a prime; may be wrong with "low" probability. The
+     * bases are tried concurrently on the workers of {@code pool}.
+     *
+     * @param n
+     *            number to be checked
+     * @param rounds
+     *            number of random bases to try when n >= 2^64
+     * @param pool
+     *            the pool to run the rounds on
+     * @return true means n is very likely prime; false means n is definitely
+     *         composite
+     * @requires n > 1 and rounds > 0
+     */
+    public static boolean isProbablePrime(NaturalNumber n, int rounds,
+            ForkJoinPool pool) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber3 nn = NaturalNumber3.asNaturalNumber3(n);
+        assert nn.bitLength() > 1 : "Violation of: n > 1";
+        boolean prime;
+        if (nn.bitLength() <= 2) {
+            prime = true;
+        } else if (!nn.testBit(0)) {
+            prime = false;
+        } else {
+            prime = new MillerRabinTester(nn).isProbablePrime(rounds, pool);
+        }
+        return prime;
+    }
+
+    /**
+     * Reports whether two Montgomery-form numbers are equal.
+     *
+     * @param a
+     *            one number
+     * @param b
+     *            the other number
+     * @return true iff a = b
+     */
+    private static boolean equal(int[] a, int[] b) {
+        boolean result = true;
+        for (int i = 0; result && i < a.length; i++) {
+            result = a[i] == b[i];
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,169 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Modular exponentiation with one fixed odd modulus and one fixed exponent,
+ * for raising many bases to the same power.
+ *
+ * <p>
+ * A context holds the Montgomery constants of its modulus and the sliding
+ * window recoding of its exponent, so {@link #power(NaturalNumber)} goes
+ * straight to the squarings and multiplications. Contexts for other
+ * exponents under the same modulus share its constants via
+ * {@link #withExponent(NaturalNumber)}, and {@link #forPower} keeps the most
+ * recently used context of each thread, like
+ * {@code MontgomeryModulus.forModulus}. A context is never changed after
+ * construction, so it may be shared between threads.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class ModularContext {
+
+    /**
+     * Most recently used context of each thread.
+     */
+    private static final ThreadLocal<ModularContext> LAST_USED =
+            new ThreadLocal<>();
+
+    /**
+     * Montgomery constants of the modulus.
+     */
+    private final MontgomeryModulus modulus;
+
+    /**
+     * The exponent.
+     */
+    private final NaturalNumber3 exponent;
+
+    /**
+     * Sliding window recoding of the exponent.
+     */
+    private final ExponentRecoding recoding;
+
+    /**
+     * Constructor from precomputed modulus constants.
+     *
+     * @param modulus
+     *            constants of the modulus
+     * @param p
+     *            the exponent
+     */
+    private ModularContext(MontgomeryModulus modulus, NaturalNumber p) {
+        assert p != null : "Violation of: p is not null";
+        this.modulus = modulus;
+        this.exponent = new NaturalNumber3(p);
+        this.recoding = new ExponentRecoding(this.exponent);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param m
+     *            the modulus
+     * @param p
+     *            the exponent
+     * @requires m > 1 and [m is odd]
+     */
+    public ModularContext(NaturalNumber m, NaturalNumber p) {
+        this(new MontgomeryModulus(m), p);
+    }
+
+    /**
+     * Returns a context for modulus {@code m} and exponent {@code p}, reusing
+     * that of the previous call on this thread, or at least its modulus
+     * constants, where they match.
+     *
+     * @param m
+     *            the modulus
+     * @param p
+     *            the exponent
+     * @return a context for {@code m} and {@code p}
+     * @requires m > 1 and [m is odd]
+     */
+    public static ModularContext forPower(NaturalNumber m, NaturalNumber p) {
+        assert m != null : "Violation of: m is not null";
+        assert p != null : "Violation of: p is not null";
+        ModularContext result = LAST_USED.get();
+        if (result == null || !result.modulus.hasModulus(m)) {
+            result = new ModularContext(m, p);
+            LAST_USED.set(result);
+        } else if (!result.hasExponent(p)) {
+            result = result.withExponent(p);
+            LAST_USED.set(result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a context with the modulus of this and exponent {@code p}.
+     *
+     * @param p
+     *            the exponent
+     * @return a context for the same modulus and {@code p}
+     */
+    public ModularContext withExponent(NaturalNumber p) {
+        assert p != null : "Violation of: p is not null";
+        return new ModularContext(this.modulus, p);
+    }
+
+    /**
+     * Reports whether {@code m} is the modulus of this.
+     *
+     * @param m
+     *            candidate modulus
+     * @return true iff m is the modulus of this
+     */
+    public boolean hasModulus(NaturalNumber m) {
+        assert m != null : "Violation of: m is not null";
+        return this.modulus.hasModulus(m);
+    }
+
+    /**
+     * Reports whether {@code p} is the exponent of this.
+     *
+     * @param p
+     *            candidate exponent
+     * @return true iff p is the exponent of this
+     */
+    public boolean hasExponent(NaturalNumber p) {
+        assert p != null : "Violation of: p is not null";
+        return this.exponent.compareTo(p) == 0;
+    }
+
+    /**
+     * Updates n to its p-th power modulo m, where m and p are the modulus and
+     * exponent of this.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @updates n
+     * @ensures n = #n ^ (p) mod m
+     */
+    public void power(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        int[] result = new int[this.modulus.size()];
+        this.modulus.power(this.modulus.toMontgomery(n), this.recoding,
+                result);
+        n.copyFrom(this.modulus.fromMontgomery(result));
+    }
+
+    /**
+     * Updates every number of {@code bases} to its p-th power modulo m,
+     * where m and p are the modulus and exponent of this.
+     *
+     * @param bases
+     *            numbers to be raised to a power
+     * @updates bases
+     * @ensures [each bases[i] = #bases[i] ^ (p) mod m]
+     */
+    public void powerAll(NaturalNumber[] bases) {
+        assert bases != null : "Violation of: bases is not null";
+        int[] result = new int[this.modulus.size()];
+        for (NaturalNumber n : bases) {
+            this.modulus.power(this.modulus.toMontgomery(n), this.recoding,
+                    result);
+            n.copyFrom(this.modulus.fromMontgomery(result));
+        }
+    }
+
+}
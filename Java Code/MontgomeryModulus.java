@@ -0,0 +1,407 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Montgomery multiplication and modular exponentiation for one fixed odd
+ * modulus.
+ *
+ * <p>
+ * With {@code R = 2^(32 * k)} for a {@code k}-limb modulus {@code m}, numbers
+ * are kept in Montgomery form {@code a * R mod m}. The product of two such
+ * numbers is reduced with shifts and one-limb multiplications instead of a
+ * long division, so {@code powerMod} never calls {@code divide} inside its
+ * loop. The constants that depend only on {@code m} are computed once by the
+ * constructor, and {@link #forModulus(NaturalNumber)} keeps the most recently
+ * used modulus of each thread so repeated calls with the same {@code m} (as in
+ * the witness loop of {@code CryptoUtilities.isPrime2}) skip that work.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class MontgomeryModulus {
+
+    /**
+     * Mask selecting the low 32 bits of a long, i.e., one unsigned limb.
+     */
+    private static final long LIMB_MASK = 0xFFFFFFFFL;
+
+    /**
+     * Number of bits in one limb.
+     */
+    private static final int LIMB_BITS = 32;
+
+    /**
+     * Newton steps needed to lift an inverse modulo 2^3 (= 3 bits correct) to
+     * one modulo 2^32: the number of correct bits doubles each step, 3, 6,
+     * 12, 24, 48.
+     */
+    private static final int INVERSE_STEPS = 4;
+
+    /**
+     * Most recently used modulus of each thread.
+     */
+    private static final ThreadLocal<MontgomeryModulus> LAST_USED =
+            new ThreadLocal<>();
+
+    /**
+     * Work space of each thread for {@link #power}: a scratch buffer for
+     * {@link #multiply} followed by buffers of one modulus size each. It is
+     * kept until a modulus of another size or a larger window table needs a
+     * new one, so the workers of a batch do not allocate a table per power.
+     */
+    private static final ThreadLocal<int[][]> WORK_SPACE =
+            new ThreadLocal<>();
+
+    /**
+     * Limbs of the modulus, least significant first.
+     */
+    private final int[] modulus;
+
+    /**
+     * Number of limbs in the modulus.
+     */
+    private final int size;
+
+    /**
+     * -m^(-1) mod 2^32.
+     */
+    private final int inverse;
+
+    /**
+     * R^2 mod m, used to bring numbers into Montgomery form.
+     */
+    private final int[] rSquared;
+
+    /**
+     * R mod m, i.e., 1 in Montgomery form.
+     */
+    private final int[] one;
+
+    /**
+     * Constructor.
+     *
+     * @param m
+     *            the modulus
+     * @requires m > 1 and [m is odd]
+     */
+    public MontgomeryModulus(NaturalNumber m) {
+        assert m != null : "Violation of: m is not null";
+        NaturalNumber3 mm = NaturalNumber3.asNaturalNumber3(m);
+        assert mm.bitLength() > 1 : "Violation of: m > 1";
+        assert mm.testBit(0) : "Violation of: m is odd";
+
+        this.size = mm.limbLength();
+        this.modulus = mm.limbsCopy(this.size);
+
+        /*
+         * Newton's iteration x = x * (2 - m0 * x) doubles the number of
+         * correct low bits of m0^(-1) each step; m0 is its own inverse mod 8,
+         * so the iteration starts with 3 correct bits
+         */
+        int m0 = this.modulus[0];
+        int x = m0;
+        for (int i = 0; i < INVERSE_STEPS; i++) {
+            x *= 2 - m0 * x;
+        }
+        this.inverse = -x;
+
+        /*
+         * R^2 mod m is the only place a long division is needed
+         */
+        NaturalNumber3 r2 = new NaturalNumber3();
+        int[] r2Limbs = new int[2 * this.size + 1];
+        r2Limbs[2 * this.size] = 1;
+        r2.setLimbs(r2Limbs, r2Limbs.length);
+        this.rSquared = NaturalNumber3.asNaturalNumber3(r2.divide(mm))
+                .limbsCopy(this.size);
+
+        int[] unit = new int[this.size];
+        unit[0] = 1;
+        this.one = new int[this.size];
+        this.multiply(unit, this.rSquared, this.one, this.newScratch());
+    }
+
+    /**
+     * Returns the constants for modulus {@code m}, reusing those of the
+     * previous call on this thread if it had the same modulus.
+     *
+     * @param m
+     *            the modulus
+     * @return Montgomery constants for {@code m}
+     * @requires m > 1 and [m is odd]
+     */
+    public static MontgomeryModulus forModulus(NaturalNumber m) {
+        MontgomeryModulus result = LAST_USED.get();
+        if (result == null || !result.hasModulus(m)) {
+            result = new MontgomeryModulus(m);
+            LAST_USED.set(result);
+        }
+        return result;
+    }
+
+    /**
+     * Reports whether {@code m} is the modulus of this.
+     *
+     * @param m
+     *            candidate modulus
+     * @return true iff m is the modulus of this
+     */
+    public boolean hasModulus(NaturalNumber m) {
+        NaturalNumber3 mm = NaturalNumber3.asNaturalNumber3(m);
+        boolean result = mm.limbLength() == this.size;
+        if (result) {
+            int[] limbs = mm.limbsCopy(this.size);
+            for (int i = 0; result && i < this.size; i++) {
+                result = limbs[i] == this.modulus[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of limbs in the modulus, which is the length of every
+     * Montgomery-form array handled by this.
+     *
+     * @return the size of the modulus in limbs
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns a scratch buffer large enough for {@link #multiply}.
+     *
+     * @return a new scratch buffer
+     */
+    int[] newScratch() {
+        return new int[this.size + 2];
+    }
+
+    /**
+     * Returns the work space of the current thread for this modulus: a
+     * scratch buffer for {@link #multiply} at index 0, then at least
+     * {@code buffers} arrays of {@code size()} limbs. The arrays are shared
+     * by every modulus of the same size on this thread, so their contents do
+     * not survive the next call.
+     *
+     * @param buffers
+     *            number of {@code size()}-limb arrays needed
+     * @return the work space
+     */
+    int[][] workSpace(int buffers) {
+        int[][] work = WORK_SPACE.get();
+        if (work == null || work.length <= buffers
+                || work[0].length != this.size + 2) {
+            work = new int[buffers + 1][];
+            work[0] = this.newScratch();
+            for (int i = 1; i < work.length; i++) {
+                work[i] = new int[this.size];
+            }
+            WORK_SPACE.set(work);
+        }
+        return work;
+    }
+
+    /**
+     * Returns {@code n mod m} in Montgomery form.
+     *
+     * @param n
+     *            the number to convert
+     * @return {@code n * R mod m}, as {@code size()} limbs
+     */
+    int[] toMontgomery(NaturalNumber n) {
+        NaturalNumber3 nn = NaturalNumber3.asNaturalNumber3(n);
+        int[] reduced;
+        if (nn.limbLength() > this.size) {
+            NaturalNumber3 copy = new NaturalNumber3(nn);
+            NaturalNumber3 m = new NaturalNumber3();
+            m.setLimbs(this.modulus.clone(), this.size);
+            reduced = NaturalNumber3.asNaturalNumber3(copy.divide(m))
+                    .limbsCopy(this.size);
+        } else {
+            reduced = nn.limbsCopy(this.size);
+        }
+        /*
+         * Montgomery multiplication accepts any input below R, so a value
+         * with as many limbs as m needs no division to be brought below m
+         */
+        int[] result = new int[this.size];
+        this.multiply(reduced, this.rSquared, result, this.newScratch());
+        return result;
+    }
+
+    /**
+     * Converts {@code a} out of Montgomery form.
+     *
+     * @param a
+     *            a number in Montgomery form
+     * @return {@code a * R^(-1) mod m}
+     */
+    NaturalNumber3 fromMontgomery(int[] a) {
+        int[] unit = new int[this.size];
+        unit[0] = 1;
+        int[] limbs = new int[this.size];
+        this.multiply(a, unit, limbs, this.newScratch());
+        NaturalNumber3 result = new NaturalNumber3();
+        result.setLimbs(limbs, this.size);
+        return result;
+    }
+
+    /**
+     * Copies 1 in Montgomery form into {@code result}.
+     *
+     * @param result
+     *            receives R mod m
+     */
+    void setOne(int[] result) {
+        System.arraycopy(this.one, 0, result, 0, this.size);
+    }
+
+    /**
+     * Montgomery product: sets {@code result} to {@code a * b * R^(-1) mod m}
+     * using the coarsely integrated operand scanning (CIOS) method.
+     *
+     * @param a
+     *            first factor, {@code size()} limbs
+     * @param b
+     *            second factor, {@code size()} limbs
+     * @param result
+     *            receives the product; may be the same array as {@code a} or
+     *            {@code b}
+     * @param scratch
+     *            work space from {@link #newScratch()}
+     * @requires a * b < R * m
+     */
+    void multiply(int[] a, int[] b, int[] result, int[] scratch) {
+        final int k = this.size;
+        final int[] n = this.modulus;
+        final int[] t = scratch;
+        for (int i = 0; i < t.length; i++) {
+            t[i] = 0;
+        }
+        for (int i = 0; i < k; i++) {
+            /*
+             * t += a[i] * b
+             */
+            long ai = a[i] & LIMB_MASK;
+            long carry = 0;
+            for (int j = 0; j < k; j++) {
+                long s = (t[j] & LIMB_MASK) + ai * (b[j] & LIMB_MASK) + carry;
+                t[j] = (int) s;
+                carry = s >>> LIMB_BITS;
+            }
+            long s = (t[k] & LIMB_MASK) + carry;
+            t[k] = (int) s;
+            t[k + 1] = (int) (s >>> LIMB_BITS);
+
+            /*
+             * t = (t + q * m) / 2^32, with q chosen so the low limb vanishes
+             */
+            long q = (t[0] * this.inverse) & LIMB_MASK;
+            s = (t[0] & LIMB_MASK) + q * (n[0] & LIMB_MASK);
+            carry = s >>> LIMB_BITS;
+            for (int j = 1; j < k; j++) {
+                s = (t[j] & LIMB_MASK) + q * (n[j] & LIMB_MASK) + carry;
+                t[j - 1] = (int) s;
+                carry = s >>> LIMB_BITS;
+            }
+            s = (t[k] & LIMB_MASK) + carry;
+            t[k - 1] = (int) s;
+            t[k] = t[k + 1] + (int) (s >>> LIMB_BITS);
+        }
+
+        /*
+         * Now t < 2m; one conditional subtraction brings it below m
+         */
+        boolean subtract = t[k] != 0;
+        if (!subtract) {
+            int c = 0;
+            for (int i = k - 1; c == 0 && i >= 0; i--) {
+                c = Integer.compareUnsigned(t[i], n[i]);
+            }
+            subtract = c >= 0;
+        }
+        if (subtract) {
+            long borrow = 0;
+            for (int i = 0; i < k; i++) {
+                long d = (t[i] & LIMB_MASK) - (n[i] & LIMB_MASK) - borrow;
+                result[i] = (int) d;
+                borrow = d >>> (2 * LIMB_BITS - 1);
+            }
+        } else {
+            System.arraycopy(t, 0, result, 0, k);
+        }
+    }
+
+    /**
+     * Sets {@code result} to {@code base^p} in Montgomery form, where
+     * {@code p} is the exponent recoded by {@code exponent}, using
+     * left-to-right sliding-window exponentiation over a table of odd powers
+     * of {@code base}.
+     *
+     * @param base
+     *            the base, in Montgomery form
+     * @param exponent
+     *            the recoded exponent
+     * @param result
+     *            receives the power, in Montgomery form; must not be
+     *            {@code base} or an array of {@link #workSpace}
+     */
+    void power(int[] base, ExponentRecoding exponent, int[] result) {
+        assert base != result : "Violation of: base is not result";
+        int[][] work = this.workSpace(exponent.tableSize() + 1);
+        int[] scratch = work[0];
+
+        /*
+         * work[first + i] = base^(2i + 1), and work[1] = base^2
+         */
+        final int first = 2;
+        System.arraycopy(base, 0, work[first], 0, this.size);
+        if (exponent.tableSize() > 1) {
+            int[] square = work[1];
+            this.multiply(base, base, square, scratch);
+            for (int i = 1; i < exponent.tableSize(); i++) {
+                this.multiply(work[first + i - 1], square, work[first + i],
+                        scratch);
+            }
+        }
+
+        if (exponent.windowCount() == 0) {
+            this.setOne(result);
+        } else {
+            /*
+             * Squarings ahead of the first window would only square 1
+             */
+            System.arraycopy(work[first + exponent.tableIndex(0)], 0, result,
+                    0, this.size);
+            for (int w = 1; w < exponent.windowCount(); w++) {
+                for (int i = 0; i < exponent.squaringsBefore(w); i++) {
+                    this.multiply(result, result, result, scratch);
+                }
+                this.multiply(result, work[first + exponent.tableIndex(w)],
+                        result, scratch);
+            }
+        }
+        for (int i = 0; i < exponent.trailingSquarings(); i++) {
+            this.multiply(result, result, result, scratch);
+        }
+    }
+
+    /**
+     * Updates n to its p-th power modulo the modulus of this.
+     *
+     * @param n
+     *            number to be raised to a power
+     * @param p
+     *            the power
+     * @updates n
+     * @ensures n = #n ^ (p) mod m
+     */
+    public void powerMod(NaturalNumber n, NaturalNumber p) {
+        assert n != null : "Violation of: n is not null";
+        assert p != null : "Violation of: p is not null";
+        int[] result = new int[this.size];
+        this.power(this.toMontgomery(n), new ExponentRecoding(p), result);
+        n.copyFrom(this.fromMontgomery(result));
+    }
+
+}
@@ -0,0 +1,902 @@
+import java.util.Arrays;
+
+import components.naturalnumber.NaturalNumber;
+import components.naturalnumber.NaturalNumberSecondary;
+
+/**
+ * {@code NaturalNumber} represented as an array of binary limbs, with
+ * implementations of primary methods and fast overrides of the arithmetic
+ * secondary methods.
+ *
+ * <p>
+ * Unlike {@code NaturalNumber2}, which keeps one decimal digit per entry,
+ * each limb here holds 32 bits, so {@code multiply}, {@code divide} and
+ * {@code compareTo} work a machine word at a time. Decimal digits are only
+ * produced when a kernel method or {@code toString} asks for them.
+ * </p>
+ *
+ * @convention <pre>
+ * 0 <= this.length <= |this.limbs|  and
+ * [this.limbs[0, this.length) holds the value, least significant limb
+ *   first, each limb read as an unsigned 32-bit integer]  and
+ * (this.length = 0  or  this.limbs[this.length - 1] /= 0)
+ * </pre>
+ * @correspondence <pre>
+ * this = [sum of this.limbs[i] * 2^(32 * i) for 0 <= i < this.length]
+ * </pre>
+ *
+ * @author Ryan McKinley
+ */
+public class NaturalNumber3 extends NaturalNumberSecondary {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Mask selecting the low 32 bits of a long, i.e., one unsigned limb.
+     */
+    private static final long LIMB_MASK = 0xFFFFFFFFL;
+
+    /**
+     * Number of bits in one limb.
+     */
+    private static final int LIMB_BITS = 32;
+
+    /**
+     * Largest power of 10 that fits in one limb, used to convert to and from
+     * decimal nine digits at a time.
+     */
+    private static final int DECIMAL_CHUNK = 1_000_000_000;
+
+    /**
+     * Number of decimal digits in {@code DECIMAL_CHUNK}.
+     */
+    private static final int DECIMAL_CHUNK_DIGITS = 9;
+
+    /**
+     * Useful constant, not a magic number: 10.
+     */
+    private static final int RADIX = 10;
+
+    /**
+     * Limbs of this, least significant first.
+     */
+    private int[] limbs;
+
+    /**
+     * Number of limbs of {@code this.limbs} in use.
+     */
+    private int length;
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+        this.limbs = new int[2];
+        this.length = 0;
+    }
+
+    /**
+     * Makes sure {@code this.limbs} can hold at least {@code capacity} limbs,
+     * keeping the current value.
+     *
+     * @param capacity
+     *            minimum number of limbs needed
+     */
+    private void ensureCapacity(int capacity) {
+        if (this.limbs.length < capacity) {
+            this.limbs = Arrays.copyOf(this.limbs,
+                    Math.max(capacity, 2 * this.limbs.length));
+        }
+    }
+
+    /**
+     * Drops leading zero limbs so the convention holds again.
+     */
+    private void normalize() {
+        while (this.length > 0 && this.limbs[this.length - 1] == 0) {
+            this.length--;
+        }
+    }
+
+    /**
+     * Replaces the value of this with the first {@code len} limbs of
+     * {@code source}, which this takes ownership of.
+     *
+     * @param source
+     *            new limbs, least significant first
+     * @param len
+     *            number of limbs of {@code source} in use
+     */
+    final void setLimbs(int[] source, int len) {
+        this.limbs = source;
+        this.length = len;
+        this.normalize();
+    }
+
+    /**
+     * Updates this to {@code this * mul + add}.
+     *
+     * @param mul
+     *            multiplier, read as unsigned
+     * @param add
+     *            addend, read as unsigned
+     */
+    private void multiplyAddSmall(int mul, int add) {
+        long m = mul & LIMB_MASK;
+        long carry = add & LIMB_MASK;
+        for (int i = 0; i < this.length; i++) {
+            long t = (this.limbs[i] & LIMB_MASK) * m + carry;
+            this.limbs[i] = (int) t;
+            carry = t >>> LIMB_BITS;
+        }
+        if (carry != 0) {
+            this.ensureCapacity(this.length + 1);
+            this.limbs[this.length] = (int) carry;
+            this.length++;
+        }
+    }
+
+    /**
+     * Updates this to {@code this / d} and returns {@code this mod d}.
+     *
+     * @param d
+     *            divisor, read as unsigned
+     * @return the remainder
+     * @requires d /= 0
+     */
+    private long divideSmall(int d) {
+        assert d != 0 : "Violation of: d /= 0";
+        long divisor = d & LIMB_MASK;
+        long rem = 0;
+        for (int i = this.length - 1; i >= 0; i--) {
+            long t = (rem << LIMB_BITS) | (this.limbs[i] & LIMB_MASK);
+            this.limbs[i] = (int) Long.divideUnsigned(t, divisor);
+            rem = Long.remainderUnsigned(t, divisor);
+        }
+        this.normalize();
+        return rem;
+    }
+
+    /**
+     * Returns {@code n} as a {@code NaturalNumber3}, converting it only if it
+     * has some other dynamic type.
+     *
+     * @param n
+     *            the number to view
+     * @return {@code n} itself, or a {@code NaturalNumber3} equal to it
+     */
+    static NaturalNumber3 asNaturalNumber3(NaturalNumber n) {
+        NaturalNumber3 result;
+        if (n instanceof NaturalNumber3) {
+            result = (NaturalNumber3) n;
+        } else {
+            result = new NaturalNumber3(n.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Compares the magnitudes held in two limb arrays.
+     *
+     * @param a
+     *            first limbs
+     * @param aLen
+     *            limbs of {@code a} in use
+     * @param b
+     *            second limbs
+     * @param bLen
+     *            limbs of {@code b} in use
+     * @return negative, zero, or positive as a is less than, equal to, or
+     *         greater than b
+     */
+    private static int compareLimbs(int[] a, int aLen, int[] b, int bLen) {
+        int result = Integer.compare(aLen, bLen);
+        for (int i = aLen - 1; result == 0 && i >= 0; i--) {
+            result = Integer.compareUnsigned(a[i], b[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the product of two limb arrays.
+     *
+     * @param a
+     *            first factor
+     * @param aLen
+     *            limbs of {@code a} in use
+     * @param b
+     *            second factor
+     * @param bLen
+     *            limbs of {@code b} in use
+     * @return the {@code aLen + bLen} limbs of {@code a * b}
+     */
+    private static int[] multiplyLimbs(int[] a, int aLen, int[] b, int bLen) {
+        int[] product = new int[aLen + bLen];
+        for (int i = 0; i < aLen; i++) {
+            long ai = a[i] & LIMB_MASK;
+            long carry = 0;
+            for (int j = 0; j < bLen; j++) {
+                long t = ai * (b[j] & LIMB_MASK) + (product[i + j] & LIMB_MASK)
+                        + carry;
+                product[i + j] = (int) t;
+                carry = t >>> LIMB_BITS;
+            }
+            product[i + bLen] = (int) carry;
+        }
+        return product;
+    }
+
+    /**
+     * Divides {@code u} by {@code v} using Knuth's Algorithm D (TAOCP vol. 2,
+     * 4.3.1).
+     *
+     * @param u
+     *            dividend limbs
+     * @param uLen
+     *            limbs of {@code u} in use
+     * @param v
+     *            divisor limbs
+     * @param vLen
+     *            limbs of {@code v} in use
+     * @param quotient
+     *            receives the {@code uLen - vLen + 1} quotient limbs
+     * @return the {@code vLen} limbs of the remainder
+     * @requires vLen >= 2 and uLen >= vLen and v[vLen - 1] /= 0
+     */
+    private static int[] divideLimbs(int[] u, int uLen, int[] v, int vLen,
+            int[] quotient) {
+        int shift = Integer.numberOfLeadingZeros(v[vLen - 1]);
+        int[] vn = new int[vLen];
+        int[] un = new int[uLen + 1];
+        if (shift == 0) {
+            System.arraycopy(v, 0, vn, 0, vLen);
+            System.arraycopy(u, 0, un, 0, uLen);
+        } else {
+            for (int i = vLen - 1; i > 0; i--) {
+                vn[i] = (v[i] << shift) | (v[i - 1] >>> (LIMB_BITS - shift));
+            }
+            vn[0] = v[0] << shift;
+            un[uLen] = u[uLen - 1] >>> (LIMB_BITS - shift);
+            for (int i = uLen - 1; i > 0; i--) {
+                un[i] = (u[i] << shift) | (u[i - 1] >>> (LIMB_BITS - shift));
+            }
+            un[0] = u[0] << shift;
+        }
+
+        long vTop = vn[vLen - 1] & LIMB_MASK;
+        long vNext = vn[vLen - 2] & LIMB_MASK;
+        final long base = 1L << LIMB_BITS;
+        for (int j = uLen - vLen; j >= 0; j--) {
+            /*
+             * Estimate the next quotient limb from the top two limbs of the
+             * running remainder, then correct the estimate, which is at most
+             * two too large
+             */
+            long num = ((un[j + vLen] & LIMB_MASK) << LIMB_BITS)
+                    | (un[j + vLen - 1] & LIMB_MASK);
+            long qHat = Long.divideUnsigned(num, vTop);
+            long rHat = Long.remainderUnsigned(num, vTop);
+            while (qHat >= base || Long.compareUnsigned(qHat * vNext,
+                    (rHat << LIMB_BITS) | (un[j + vLen - 2] & LIMB_MASK)) > 0) {
+                qHat--;
+                rHat += vTop;
+                if (rHat >= base) {
+                    break;
+                }
+            }
+
+            /*
+             * Multiply and subtract qHat * vn from the running remainder
+             */
+            long borrow = 0;
+            for (int i = 0; i < vLen; i++) {
+                long p = qHat * (vn[i] & LIMB_MASK);
+                long t = (un[i + j] & LIMB_MASK) - borrow - (p & LIMB_MASK);
+                un[i + j] = (int) t;
+                borrow = (p >>> LIMB_BITS) - (t >> LIMB_BITS);
+            }
+            long t = (un[j + vLen] & LIMB_MASK) - borrow;
+            un[j + vLen] = (int) t;
+
+            if (t < 0) {
+                /*
+                 * qHat was still one too large: add the divisor back
+                 */
+                qHat--;
+                long carry = 0;
+                for (int i = 0; i < vLen; i++) {
+                    long s = (un[i + j] & LIMB_MASK) + (vn[i] & LIMB_MASK)
+                            + carry;
+                    un[i + j] = (int) s;
+                    carry = s >>> LIMB_BITS;
+                }
+                un[j + vLen] += (int) carry;
+            }
+            quotient[j] = (int) qHat;
+        }
+
+        int[] remainder = new int[vLen];
+        if (shift == 0) {
+            System.arraycopy(un, 0, remainder, 0, vLen);
+        } else {
+            for (int i = 0; i < vLen; i++) {
+                remainder[i] = (un[i] >>> shift)
+                        | (un[i + 1] << (LIMB_BITS - shift));
+            }
+        }
+        return remainder;
+    }
+
+    /*
+     * Limb access for the modular arithmetic engines -------------------------
+     */
+
+    /**
+     * Reports the number of limbs in use.
+     *
+     * @return the number of 32-bit limbs needed to hold this
+     */
+    final int limbLength() {
+        return this.length;
+    }
+
+    /**
+     * Returns a fresh copy of the limbs of this, zero-padded to {@code size}
+     * limbs.
+     *
+     * @param size
+     *            length of the returned array
+     * @return the limbs of this, least significant first
+     * @requires size >= this.limbLength()
+     */
+    final int[] limbsCopy(int size) {
+        assert size >= this.length : "Violation of: size >= limbLength";
+        int[] result = new int[size];
+        System.arraycopy(this.limbs, 0, result, 0, this.length);
+        return result;
+    }
+
+    /**
+     * Reports the number of bits needed to write this in binary.
+     *
+     * @return the bit length of this, 0 when this = 0
+     */
+    final int bitLength() {
+        int result = 0;
+        if (this.length > 0) {
+            result = this.length * LIMB_BITS
+                    - Integer.numberOfLeadingZeros(this.limbs[this.length - 1]);
+        }
+        return result;
+    }
+
+    /**
+     * Reports bit {@code i} of this.
+     *
+     * @param i
+     *            bit position, 0 being the least significant
+     * @return true iff bit {@code i} of this is 1
+     * @requires i >= 0
+     */
+    final boolean testBit(int i) {
+        assert i >= 0 : "Violation of: i >= 0";
+        int limb = i / LIMB_BITS;
+        return limb < this.length
+                && ((this.limbs[limb] >>> (i % LIMB_BITS)) & 1) != 0;
+    }
+
+    /**
+     * Returns {@code this mod d} without changing this.
+     *
+     * @param d
+     *            the divisor
+     * @return the remainder
+     * @requires d > 0
+     */
+    final int remainderSmall(int d) {
+        assert d > 0 : "Violation of: d > 0";
+        long rem = 0;
+        for (int i = this.length - 1; i >= 0; i--) {
+            rem = ((rem << LIMB_BITS) | (this.limbs[i] & LIMB_MASK)) % d;
+        }
+        return (int) rem;
+    }
+
+    /**
+     * Reports the position of the lowest 1 bit of this.
+     *
+     * @return the number of trailing 0 bits of this
+     * @requires this > 0
+     */
+    final int lowestSetBit() {
+        assert this.length > 0 : "Violation of: this > 0";
+        int i = 0;
+        while (this.limbs[i] == 0) {
+            i++;
+        }
+        return i * LIMB_BITS + Integer.numberOfTrailingZeros(this.limbs[i]);
+    }
+
+    /**
+     * Updates this to {@code this / 2^bits}.
+     *
+     * @param bits
+     *            number of bits to shift out
+     * @updates this
+     * @requires bits >= 0
+     * @ensures this = #this / 2^(bits)
+     */
+    final void shiftRight(int bits) {
+        assert bits >= 0 : "Violation of: bits >= 0";
+        int limbShift = bits / LIMB_BITS;
+        int bitShift = bits % LIMB_BITS;
+        if (limbShift >= this.length) {
+            this.length = 0;
+        } else {
+            int newLength = this.length - limbShift;
+            for (int i = 0; i < newLength; i++) {
+                int low = this.limbs[i + limbShift] >>> bitShift;
+                int high = 0;
+                if (bitShift != 0 && i + limbShift + 1 < this.length) {
+                    high = this.limbs[i + limbShift + 1] << (LIMB_BITS
+                            - bitShift);
+                }
+                this.limbs[i] = low | high;
+            }
+            for (int i = newLength; i < this.length; i++) {
+                this.limbs[i] = 0;
+            }
+            this.length = newLength;
+            this.normalize();
+        }
+    }
+
+    /**
+     * Updates this to {@code this * 2^bits}.
+     *
+     * @param bits
+     *            number of bits to shift in
+     * @updates this
+     * @requires bits >= 0
+     * @ensures this = #this * 2^(bits)
+     */
+    final void shiftLeft(int bits) {
+        assert bits >= 0 : "Violation of: bits >= 0";
+        if (this.length > 0) {
+            int limbShift = bits / LIMB_BITS;
+            int bitShift = bits % LIMB_BITS;
+            int[] result = new int[this.length + limbShift + 1];
+            for (int i = this.length - 1; i >= 0; i--) {
+                result[i + limbShift + 1] |= (int) ((this.limbs[i]
+                        & LIMB_MASK) >>> (LIMB_BITS - bitShift));
+                result[i + limbShift] = this.limbs[i] << bitShift;
+            }
+            this.setLimbs(result, result.length);
+        }
+    }
+
+    /**
+     * Updates this to {@code this mod 2^bits}.
+     *
+     * @param bits
+     *            number of bits to keep
+     * @updates this
+     * @requires bits >= 0
+     * @ensures this = #this mod 2^(bits)
+     */
+    final void keepLowBits(int bits) {
+        assert bits >= 0 : "Violation of: bits >= 0";
+        int limbCount = bits / LIMB_BITS;
+        int bitCount = bits % LIMB_BITS;
+        if (limbCount < this.length) {
+            int newLength = limbCount;
+            if (bitCount != 0) {
+                this.limbs[limbCount] &= (1 << bitCount) - 1;
+                newLength++;
+            }
+            for (int i = newLength; i < this.length; i++) {
+                this.limbs[i] = 0;
+            }
+            this.length = newLength;
+            this.normalize();
+        }
+    }
+
+    /**
+     * Returns limb {@code i} of this as an unsigned value, 0 past the top.
+     *
+     * @param i
+     *            limb index
+     * @return the limb
+     */
+    private long limbAt(int i) {
+        long result = 0;
+        if (i < this.length) {
+            result = this.limbs[i] & LIMB_MASK;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the 63 bits of this starting at bit {@code shift}, i.e.,
+     * {@code (this / 2^shift) mod 2^63}.
+     *
+     * @param shift
+     *            position of the lowest bit returned
+     * @return the selected bits
+     * @requires shift >= 0
+     */
+    final long bitsFrom(int shift) {
+        assert shift >= 0 : "Violation of: shift >= 0";
+        int limb = shift / LIMB_BITS;
+        int bitShift = shift % LIMB_BITS;
+        long low = this.limbAt(limb) | (this.limbAt(limb + 1) << LIMB_BITS);
+        long result = low >>> bitShift;
+        if (bitShift != 0) {
+            result |= this.limbAt(limb + 2) << (2 * LIMB_BITS - bitShift);
+        }
+        return result & Long.MAX_VALUE;
+    }
+
+    /**
+     * Sets this to {@code v}.
+     *
+     * @param v
+     *            the new value
+     * @replaces this
+     * @requires v >= 0
+     * @ensures this = v
+     */
+    final void setFromLong(long v) {
+        assert v >= 0 : "Violation of: v >= 0";
+        this.ensureCapacity(2);
+        this.limbs[0] = (int) v;
+        this.limbs[1] = (int) (v >>> LIMB_BITS);
+        this.length = 2;
+        this.normalize();
+    }
+
+    /**
+     * Reports the value of this as a {@code long}.
+     *
+     * @return this
+     * @requires this < 2^63
+     */
+    final long toLong() {
+        assert this.bitLength() < Long.SIZE : "Violation of: this < 2^63";
+        long result = 0;
+        for (int i = this.length - 1; i >= 0; i--) {
+            result = (result << LIMB_BITS) | (this.limbs[i] & LIMB_MASK);
+        }
+        return result;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public NaturalNumber3() {
+        this.createNewRep();
+    }
+
+    /**
+     * Constructor from {@code int}.
+     *
+     * @param i
+     *            {@code int} to initialize from
+     */
+    public NaturalNumber3(int i) {
+        assert i >= 0 : "Violation of: i >= 0";
+        this.createNewRep();
+        this.setFromInt(i);
+    }
+
+    /**
+     * Constructor from {@code String}.
+     *
+     * @param s
+     *            {@code String} to initialize from
+     */
+    public NaturalNumber3(String s) {
+        assert s != null : "Violation of: s is not null";
+        assert s.matches("0|[1-9]\\d*") : ""
+                + "Violation of: there exists n: NATURAL (s = TO_STRING(n))";
+        this.createNewRep();
+        int first = s.length() % DECIMAL_CHUNK_DIGITS;
+        if (first == 0) {
+            first = DECIMAL_CHUNK_DIGITS;
+        }
+        this.multiplyAddSmall(0, Integer.parseInt(s.substring(0, first)));
+        this.normalize();
+        for (int i = first; i < s.length(); i += DECIMAL_CHUNK_DIGITS) {
+            this.multiplyAddSmall(DECIMAL_CHUNK, Integer
+                    .parseInt(s.substring(i, i + DECIMAL_CHUNK_DIGITS)));
+        }
+    }
+
+    /**
+     * Constructor from {@code NaturalNumber}.
+     *
+     * @param n
+     *            {@code NaturalNumber} to initialize from
+     */
+    public NaturalNumber3(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        this.createNewRep();
+        this.copyFrom(n);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public final NaturalNumber newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(NaturalNumber source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof NaturalNumber3 : ""
+                + "Violation of: source is of dynamic type NaturalNumber3";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case.
+         */
+        NaturalNumber3 localSource = (NaturalNumber3) source;
+        this.limbs = localSource.limbs;
+        this.length = localSource.length;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void multiplyBy10(int k) {
+        assert 0 <= k : "Violation of: 0 <= k";
+        assert k < RADIX : "Violation of: k < 10";
+        if (this.length == 0) {
+            this.setFromInt(k);
+        } else {
+            this.multiplyAddSmall(RADIX, k);
+        }
+    }
+
+    @Override
+    public final int divideBy10() {
+        return (int) this.divideSmall(RADIX);
+    }
+
+    @Override
+    public final boolean isZero() {
+        return this.length == 0;
+    }
+
+    /*
+     * Secondary methods overridden for speed ---------------------------------
+     */
+
+    @Override
+    public final void copyFrom(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        if (n != this) {
+            NaturalNumber3 source = asNaturalNumber3(n);
+            this.limbs = Arrays.copyOf(source.limbs,
+                    Math.max(source.length, 2));
+            this.length = source.length;
+        }
+    }
+
+    @Override
+    public final void setFromInt(int i) {
+        assert i >= 0 : "Violation of: i >= 0";
+        this.ensureCapacity(1);
+        this.limbs[0] = i;
+        this.length = 1;
+        this.normalize();
+    }
+
+    @Override
+    public final boolean canConvertToInt() {
+        return this.length == 0 || (this.length == 1 && this.limbs[0] >= 0);
+    }
+
+    @Override
+    public final int toInt() {
+        assert this.canConvertToInt() : ""
+                + "Violation of: this <= Integer.MAX_VALUE";
+        int result = 0;
+        if (this.length > 0) {
+            result = this.limbs[0];
+        }
+        return result;
+    }
+
+    @Override
+    public final int compareTo(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber3 other = asNaturalNumber3(n);
+        return compareLimbs(this.limbs, this.length, other.limbs,
+                other.length);
+    }
+
+    @Override
+    public final void increment() {
+        int i = 0;
+        while (i < this.length && this.limbs[i] == -1) {
+            this.limbs[i] = 0;
+            i++;
+        }
+        if (i == this.length) {
+            this.ensureCapacity(this.length + 1);
+            this.limbs[i] = 1;
+            this.length++;
+        } else {
+            this.limbs[i]++;
+        }
+    }
+
+    @Override
+    public final void decrement() {
+        assert !this.isZero() : "Violation of: this > 0";
+        int i = 0;
+        while (this.limbs[i] == 0) {
+            this.limbs[i] = -1;
+            i++;
+        }
+        this.limbs[i]--;
+        this.normalize();
+    }
+
+    @Override
+    public final void add(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber3 other = asNaturalNumber3(n);
+        int[] b = other.limbs;
+        int bLen = other.length;
+        int len = Math.max(this.length, bLen);
+        this.ensureCapacity(len + 1);
+        int[] a = this.limbs;
+        long carry = 0;
+        for (int i = 0; i < len; i++) {
+            long t = carry;
+            if (i < this.length) {
+                t += a[i] & LIMB_MASK;
+            }
+            if (i < bLen) {
+                t += b[i] & LIMB_MASK;
+            }
+            a[i] = (int) t;
+            carry = t >>> LIMB_BITS;
+        }
+        a[len] = (int) carry;
+        this.length = len + 1;
+        this.normalize();
+    }
+
+    @Override
+    public final void subtract(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber3 other = asNaturalNumber3(n);
+        assert this.compareTo(other) >= 0 : "Violation of: this >= n";
+        int[] a = this.limbs;
+        int[] b = other.limbs;
+        int bLen = other.length;
+        long borrow = 0;
+        for (int i = 0; i < this.length; i++) {
+            long t = (a[i] & LIMB_MASK) - borrow;
+            if (i < bLen) {
+                t -= b[i] & LIMB_MASK;
+            }
+            a[i] = (int) t;
+            borrow = t >>> (2 * LIMB_BITS - 1);
+        }
+        this.normalize();
+    }
+
+    @Override
+    public final void multiply(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber3 other = asNaturalNumber3(n);
+        if (this.length == 0 || other.length == 0) {
+            this.clear();
+        } else {
+            int len = this.length + other.length;
+            this.setLimbs(multiplyLimbs(this.limbs, this.length, other.limbs,
+                    other.length), len);
+        }
+    }
+
+    @Override
+    public final NaturalNumber divide(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber3 other = asNaturalNumber3(n);
+        assert !other.isZero() : "Violation of: n > 0";
+        NaturalNumber3 remainder = new NaturalNumber3();
+        if (compareLimbs(this.limbs, this.length, other.limbs,
+                other.length) < 0) {
+            remainder.transferFrom(this);
+        } else if (other.length == 1) {
+            long r = this.divideSmall(other.limbs[0]);
+            remainder.limbs[0] = (int) r;
+            remainder.length = 1;
+            remainder.normalize();
+        } else {
+            int[] quotient = new int[this.length - other.length + 1];
+            int[] r = divideLimbs(this.limbs, this.length, other.limbs,
+                    other.length, quotient);
+            remainder.setLimbs(r, r.length);
+            this.setLimbs(quotient, quotient.length);
+        }
+        return remainder;
+    }
+
+    @Override
+    public final void power(int p) {
+        assert p >= 0 : "Violation of: p >= 0";
+        int[] base = Arrays.copyOf(this.limbs, this.length);
+        int baseLen = this.length;
+        int[] result = { 1 };
+        int resultLen = 1;
+        int bits = p;
+        while (bits != 0) {
+            if ((bits & 1) != 0) {
+                result = multiplyLimbs(result, resultLen, base, baseLen);
+                resultLen = result.length;
+                while (resultLen > 0 && result[resultLen - 1] == 0) {
+                    resultLen--;
+                }
+            }
+            bits >>>= 1;
+            if (bits != 0) {
+                base = multiplyLimbs(base, baseLen, base, baseLen);
+                baseLen = base.length;
+                while (baseLen > 0 && base[baseLen - 1] == 0) {
+                    baseLen--;
+                }
+            }
+        }
+        this.setLimbs(result, resultLen);
+    }
+
+    @Override
+    public final String toString() {
+        NaturalNumber3 copy = new NaturalNumber3(this);
+        int[] chunks = new int[this.length * 2 + 1];
+        int count = 0;
+        do {
+            chunks[count] = (int) copy.divideSmall(DECIMAL_CHUNK);
+            count++;
+        } while (!copy.isZero());
+        StringBuilder result = new StringBuilder(
+                Integer.toString(chunks[count - 1]));
+        for (int i = count - 2; i >= 0; i--) {
+            String chunk = Integer.toString(chunks[i]);
+            for (int j = chunk.length(); j < DECIMAL_CHUNK_DIGITS; j++) {
+                result.append('0');
+            }
+            result.append(chunk);
+        }
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,88 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Parity and bit queries on natural numbers.
+ *
+ * <p>
+ * For a {@link NaturalNumber3} the answers are read straight from its limbs:
+ * parity and single bits in constant time, and the bit length from the top
+ * limb. Parity of any other implementation takes one {@code divideBy10} and
+ * one {@code multiplyBy10}, since the last decimal digit has the same parity
+ * as the number; neither allocates. Bit length and single bits of other
+ * implementations need a binary copy of the number.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class NaturalNumberBits {
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private NaturalNumberBits() {
+    }
+
+    /**
+     * Reports whether n is odd.
+     *
+     * @param n
+     *            the number to be checked
+     * @return true iff n is odd
+     * @ensures isOdd = (n mod 2 = 1)
+     */
+    public static boolean isOdd(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        boolean odd;
+        if (n instanceof NaturalNumber3) {
+            odd = ((NaturalNumber3) n).testBit(0);
+        } else {
+            int digit = n.divideBy10();
+            n.multiplyBy10(digit);
+            odd = digit % 2 != 0;
+        }
+        return odd;
+    }
+
+    /**
+     * Reports whether n is even.
+     *
+     * @param n
+     *            the number to be checked
+     * @return true iff n is even
+     * @ensures isEven = (n mod 2 = 0)
+     */
+    public static boolean isEven(NaturalNumber n) {
+        return !isOdd(n);
+    }
+
+    /**
+     * Reports the number of bits in the binary representation of n, without a
+     * leading 0.
+     *
+     * @param n
+     *            the number
+     * @return the least b such that n < 2^b
+     */
+    public static int bitLength(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        return NaturalNumber3.asNaturalNumber3(n).bitLength();
+    }
+
+    /**
+     * Reports bit {@code i} of n.
+     *
+     * @param n
+     *            the number
+     * @param i
+     *            position of the bit, 0 for the least significant
+     * @return true iff bit i of n is 1
+     * @requires i >= 0
+     * @ensures testBit = ((n / 2^i) mod 2 = 1)
+     */
+    public static boolean testBit(NaturalNumber n, int i) {
+        assert n != null : "Violation of: n is not null";
+        assert i >= 0 : "Violation of: i >= 0";
+        return NaturalNumber3.asNaturalNumber3(n).testBit(i);
+    }
+
+}
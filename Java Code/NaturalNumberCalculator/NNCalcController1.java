@@ -24,6 +24,16 @@ public final class NNCalcController1 implements NNCalcController {
     private static final NaturalNumber TWO = new NaturalNumber2(2),
             INT_LIMIT = new NaturalNumber2(Integer.MAX_VALUE);
 
+    /**
+     * Largest estimated size of the root cache, in bytes.
+     */
+    private static final long ROOT_CACHE_BYTES = 1L << 22;
+
+    /**
+     * Roots computed so far, shared by all calculators.
+     */
+    private static final RootCache ROOTS = new RootCache(ROOT_CACHE_BYTES);
+
     /**
      * Updates this.view to display this.model, and to allow only operations
      * that are legal given this.model.
@@ -165,7 +175,7 @@ public final class NNCalcController1 implements NNCalcController {
     public void processRootEvent() {
         NaturalNumber high = this.model.top();
         NaturalNumber low = this.model.bottom();
-        high.root(low.toInt());
+        ROOTS.root(high, low.toInt());
         low.transferFrom(high);
         updateViewToMatchModel(this.model, this.view);
     }
@@ -0,0 +1,283 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Bounded cache of integer roots, keyed on the value and the root taken.
+ *
+ * <p>
+ * Entries are kept in least-recently-used order, and the oldest are evicted
+ * whenever the estimated size of all entries goes over a byte limit, so a few
+ * huge values cannot crowd out the heap. A repeated root costs one lookup and
+ * one copy instead of a fresh computation. Hits, misses and evictions are
+ * counted. All methods are synchronized, but roots are computed outside the
+ * lock, so one slow root does not hold up other threads.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class RootCache {
+
+    /**
+     * Estimated bytes per stored decimal digit (one {@code char}).
+     */
+    private static final int BYTES_PER_DIGIT = 2;
+
+    /**
+     * Estimated fixed cost in bytes of one entry: map node, key, strings.
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    /**
+     * Cache key: a value and the root taken of it.
+     */
+    private static final class Key {
+
+        /**
+         * Decimal digits of the value.
+         */
+        private final String value;
+
+        /**
+         * The root.
+         */
+        private final int r;
+
+        /**
+         * Constructor.
+         *
+         * @param value
+         *            decimal digits of the value
+         * @param r
+         *            the root
+         */
+        Key(String value, int r) {
+            this.value = value;
+            this.r = r;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            boolean result = obj == this;
+            if (!result && obj instanceof Key) {
+                Key other = (Key) obj;
+                result = this.r == other.r && this.value.equals(other.value);
+            }
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            return this.value.hashCode() * prime + this.r;
+        }
+
+    }
+
+    /**
+     * Cached roots, as decimal digits, least recently used first.
+     */
+    private final LinkedHashMap<Key, String> entries;
+
+    /**
+     * Largest estimated size of all entries, in bytes.
+     */
+    private final long byteLimit;
+
+    /**
+     * Estimated size of all entries, in bytes.
+     */
+    private long bytes;
+
+    /**
+     * Number of lookups answered from the cache.
+     */
+    private long hits;
+
+    /**
+     * Number of lookups that had to compute the root.
+     */
+    private long misses;
+
+    /**
+     * Number of entries evicted to stay within the byte limit.
+     */
+    private long evictions;
+
+    /**
+     * Constructor.
+     *
+     * @param byteLimit
+     *            largest estimated size of all entries, in bytes
+     * @requires byteLimit > 0
+     */
+    public RootCache(long byteLimit) {
+        assert byteLimit > 0 : "Violation of: byteLimit > 0";
+        this.byteLimit = byteLimit;
+        final int initialCapacity = 16;
+        final float loadFactor = 0.75f;
+        this.entries = new LinkedHashMap<>(initialCapacity, loadFactor, true);
+    }
+
+    /**
+     * Returns the estimated size in bytes of an entry.
+     *
+     * @param key
+     *            the key
+     * @param root
+     *            the cached root
+     * @return the estimated size
+     */
+    private static long sizeOf(Key key, String root) {
+        return ENTRY_OVERHEAD
+                + (long) BYTES_PER_DIGIT * (key.value.length() + root.length());
+    }
+
+    /**
+     * Looks up a root, counting a hit or a miss.
+     *
+     * @param key
+     *            the key
+     * @return the cached root, or null if there is none
+     */
+    private synchronized String lookUp(Key key) {
+        String root = this.entries.get(key);
+        if (root != null) {
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+        return root;
+    }
+
+    /**
+     * Stores a root and evicts the least recently used entries until the
+     * cache is within its byte limit again. An entry larger than the limit by
+     * itself is not stored.
+     *
+     * @param key
+     *            the key
+     * @param root
+     *            the root
+     */
+    private synchronized void store(Key key, String root) {
+        long size = sizeOf(key, root);
+        if (size <= this.byteLimit) {
+            String previous = this.entries.put(key, root);
+            if (previous != null) {
+                this.bytes -= sizeOf(key, previous);
+            }
+            this.bytes += size;
+            Iterator<Map.Entry<Key, String>> oldest = this.entries.entrySet()
+                    .iterator();
+            while (this.bytes > this.byteLimit) {
+                Map.Entry<Key, String> entry = oldest.next();
+                this.bytes -= sizeOf(entry.getKey(), entry.getValue());
+                oldest.remove();
+                this.evictions++;
+            }
+        }
+    }
+
+    /**
+     * Updates {@code n} to the {@code r}-th root of its incoming value,
+     * reusing an earlier result for the same value and root if the cache
+     * still holds it.
+     *
+     * @param n
+     *            the number whose root to compute
+     * @param r
+     *            root
+     * @updates n
+     * @requires r >= 2
+     * @ensures n ^ (r) <= #n < (n + 1) ^ (r)
+     */
+    public void root(NaturalNumber n, int r) {
+        assert n != null : "Violation of: n is  not null";
+        assert r >= 2 : "Violation of: r >= 2";
+        Key key = new Key(n.toString(), r);
+        String root = this.lookUp(key);
+        if (root != null) {
+            n.clear();
+            for (int i = 0; i < root.length(); i++) {
+                n.multiplyBy10(Character.digit(root.charAt(i), 10));
+            }
+        } else {
+            n.root(r);
+            this.store(key, n.toString());
+        }
+    }
+
+    /**
+     * Reports the number of lookups answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public synchronized long hitCount() {
+        return this.hits;
+    }
+
+    /**
+     * Reports the number of lookups that had to compute the root.
+     *
+     * @return the number of misses
+     */
+    public synchronized long missCount() {
+        return this.misses;
+    }
+
+    /**
+     * Reports the number of entries evicted to stay within the byte limit.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long evictionCount() {
+        return this.evictions;
+    }
+
+    /**
+     * Reports the number of cached roots.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Reports the estimated size of all entries, in bytes.
+     *
+     * @return the estimated size
+     */
+    public synchronized long byteSize() {
+        return this.bytes;
+    }
+
+    /**
+     * Reports the largest estimated size of all entries, in bytes.
+     *
+     * @return the byte limit
+     */
+    public long byteLimit() {
+        return this.byteLimit;
+    }
+
+    /**
+     * Removes all entries; the statistics are kept.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.bytes = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RootCache[entries=" + this.entries.size() + ", bytes="
+                + this.bytes + "/" + this.byteLimit + ", hits=" + this.hits
+                + ", misses=" + this.misses + ", evictions=" + this.evictions
+                + "]";
+    }
+
+}
@@ -0,0 +1,504 @@
+import components.naturalnumber.NaturalNumber;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Iterative greatest-common-divisor algorithms on {@code NaturalNumber}, the
+ * extended Euclidean algorithm, and modular inverses.
+ *
+ * <p>
+ * {@link #binaryGCD} (Stein's algorithm) uses only shifts and subtractions.
+ * {@link #lehmerGCD} runs most Euclidean steps on the leading 62 bits of the
+ * operands in {@code long} arithmetic and applies them to the full numbers
+ * as one linear combination, so it needs far fewer long divisions than plain
+ * Euclid. Neither one recurses, so neither can overflow the stack. The main
+ * method times both against the recursive Euclid that
+ * {@code CryptoUtilities.reduceToGCD} used to run.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class NaturalNumberGCD {
+
+    /**
+     * Number of leading bits Lehmer's algorithm works on at a time.
+     */
+    private static final int LEHMER_BITS = 62;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private NaturalNumberGCD() {
+    }
+
+    /**
+     * Bezout coefficients: {@code gcd = a * x + b * y} for the arguments
+     * {@code a} and {@code b} of {@link NaturalNumberGCD#extendedGCD}. Since
+     * natural numbers have no sign, each coefficient is kept as a magnitude
+     * plus a flag.
+     */
+    public static final class Bezout {
+
+        /**
+         * The greatest common divisor.
+         */
+        private final NaturalNumber gcd;
+
+        /**
+         * Magnitude of the coefficient of a.
+         */
+        private final NaturalNumber x;
+
+        /**
+         * Whether the coefficient of a is negative.
+         */
+        private final boolean xNegative;
+
+        /**
+         * Magnitude of the coefficient of b.
+         */
+        private final NaturalNumber y;
+
+        /**
+         * Whether the coefficient of b is negative.
+         */
+        private final boolean yNegative;
+
+        /**
+         * Constructor.
+         *
+         * @param gcd
+         *            the greatest common divisor
+         * @param x
+         *            magnitude of the coefficient of a
+         * @param xNegative
+         *            whether the coefficient of a is negative
+         * @param y
+         *            magnitude of the coefficient of b
+         * @param yNegative
+         *            whether the coefficient of b is negative
+         */
+        private Bezout(NaturalNumber gcd, NaturalNumber x, boolean xNegative,
+                NaturalNumber y, boolean yNegative) {
+            this.gcd = gcd;
+            this.x = x;
+            this.xNegative = xNegative;
+            this.y = y;
+            this.yNegative = yNegative;
+        }
+
+        /**
+         * Returns the greatest common divisor of a and b.
+         *
+         * @return gcd(a, b)
+         */
+        public NaturalNumber gcd() {
+            return this.gcd;
+        }
+
+        /**
+         * Returns the magnitude of the coefficient of a.
+         *
+         * @return |x|
+         */
+        public NaturalNumber x() {
+            return this.x;
+        }
+
+        /**
+         * Reports whether the coefficient of a is negative.
+         *
+         * @return x < 0
+         */
+        public boolean isXNegative() {
+            return this.xNegative;
+        }
+
+        /**
+         * Returns the magnitude of the coefficient of b.
+         *
+         * @return |y|
+         */
+        public NaturalNumber y() {
+            return this.y;
+        }
+
+        /**
+         * Reports whether the coefficient of b is negative.
+         *
+         * @return y < 0
+         */
+        public boolean isYNegative() {
+            return this.yNegative;
+        }
+
+    }
+
+    /**
+     * Finds the greatest common divisor of n and m with Stein's binary
+     * algorithm.
+     *
+     * @param n
+     *            one number
+     * @param m
+     *            the other number
+     * @updates n
+     * @clears m
+     * @ensures n = [greatest common divisor of #n and #m]
+     */
+    public static void binaryGCD(NaturalNumber n, NaturalNumber m) {
+        assert n != null : "Violation of: n is not null";
+        assert m != null : "Violation of: m is not null";
+        NaturalNumber3 a = new NaturalNumber3(n);
+        NaturalNumber3 b = new NaturalNumber3(m);
+        if (a.isZero()) {
+            a = b;
+        } else if (!b.isZero()) {
+            /*
+             * gcd(2^i * a', 2^j * b') = 2^min(i, j) * gcd(a', b') for odd a',
+             * b', and gcd(a, b) = gcd(a, b - a) with b - a even
+             */
+            int commonTwos = Math.min(a.lowestSetBit(), b.lowestSetBit());
+            a.shiftRight(a.lowestSetBit());
+            b.shiftRight(b.lowestSetBit());
+            while (!b.isZero()) {
+                if (a.compareTo(b) > 0) {
+                    NaturalNumber3 t = a;
+                    a = b;
+                    b = t;
+                }
+                b.subtract(a);
+                if (!b.isZero()) {
+                    b.shiftRight(b.lowestSetBit());
+                }
+            }
+            a.shiftLeft(commonTwos);
+        }
+        n.copyFrom(a);
+        m.clear();
+    }
+
+    /**
+     * Returns {@code x * a + y * b}, where x and y do not have the same sign.
+     *
+     * @param a
+     *            first number
+     * @param b
+     *            second number
+     * @param x
+     *            coefficient of a
+     * @param y
+     *            coefficient of b
+     * @return the linear combination
+     * @requires (x >= 0 and y <= 0 or x <= 0 and y >= 0) and x * a + y * b >=
+     *           0
+     */
+    private static NaturalNumber3 combine(NaturalNumber3 a, NaturalNumber3 b,
+            long x, long y) {
+        NaturalNumber3 factor = new NaturalNumber3();
+        NaturalNumber3 xa = new NaturalNumber3(a);
+        factor.setFromLong(Math.abs(x));
+        xa.multiply(factor);
+        NaturalNumber3 yb = new NaturalNumber3(b);
+        factor.setFromLong(Math.abs(y));
+        yb.multiply(factor);
+        NaturalNumber3 result;
+        if (y <= 0) {
+            xa.subtract(yb);
+            result = xa;
+        } else {
+            yb.subtract(xa);
+            result = yb;
+        }
+        return result;
+    }
+
+    /**
+     * Finds the greatest common divisor of n and m with Lehmer's algorithm
+     * (Knuth, TAOCP vol. 2, 4.5.2, Algorithm L).
+     *
+     * @param n
+     *            one number
+     * @param m
+     *            the other number
+     * @updates n
+     * @clears m
+     * @ensures n = [greatest common divisor of #n and #m]
+     */
+    public static void lehmerGCD(NaturalNumber n, NaturalNumber m) {
+        assert n != null : "Violation of: n is not null";
+        assert m != null : "Violation of: m is not null";
+        NaturalNumber3 a = new NaturalNumber3(n);
+        NaturalNumber3 b = new NaturalNumber3(m);
+        if (a.compareTo(b) < 0) {
+            NaturalNumber3 t = a;
+            a = b;
+            b = t;
+        }
+        while (!b.isZero()) {
+            if (a.bitLength() < Long.SIZE - 1) {
+                /*
+                 * Both fit in a long: finish with single-precision Euclid
+                 */
+                long x = a.toLong();
+                long y = b.toLong();
+                while (y != 0) {
+                    long t = x % y;
+                    x = y;
+                    y = t;
+                }
+                a.setFromLong(x);
+                b.clear();
+            } else {
+                /*
+                 * Simulate Euclid on the leading bits ah, bh of a and b,
+                 * tracking the cosequence (A, B; C, D) for as long as the
+                 * quotients are certain to match those of the full numbers
+                 */
+                int shift = a.bitLength() - LEHMER_BITS;
+                long ah = a.bitsFrom(shift);
+                long bh = b.bitsFrom(shift);
+                long cA = 1;
+                long cB = 0;
+                long cC = 0;
+                long cD = 1;
+                boolean certain = true;
+                while (certain) {
+                    if (bh + cC == 0 || bh + cD == 0) {
+                        certain = false;
+                    } else {
+                        long q = (ah + cA) / (bh + cC);
+                        if (q != (ah + cB) / (bh + cD)) {
+                            certain = false;
+                        } else {
+                            long t = cA - q * cC;
+                            cA = cC;
+                            cC = t;
+                            t = cB - q * cD;
+                            cB = cD;
+                            cD = t;
+                            t = ah - q * bh;
+                            ah = bh;
+                            bh = t;
+                        }
+                    }
+                }
+                if (cB == 0) {
+                    /*
+                     * Not even one quotient was certain: take one full
+                     * Euclidean step
+                     */
+                    NaturalNumber remainder = a.divide(b);
+                    a.transferFrom(b);
+                    b.copyFrom(remainder);
+                } else {
+                    NaturalNumber3 t = combine(a, b, cA, cB);
+                    b = combine(a, b, cC, cD);
+                    a = t;
+                }
+            }
+        }
+        n.copyFrom(a);
+        m.clear();
+    }
+
+    /**
+     * Runs the extended Euclidean algorithm on a and b.
+     *
+     * @param a
+     *            one number
+     * @param b
+     *            the other number
+     * @return gcd(a, b) with Bezout coefficients x, y such that gcd(a, b) = a
+     *         * x + b * y
+     * @ensures <pre>
+     * extendedGCD.gcd = [greatest common divisor of a and b]  and
+     * extendedGCD.gcd = a * extendedGCD.x + b * extendedGCD.y
+     * </pre>
+     */
+    public static Bezout extendedGCD(NaturalNumber a, NaturalNumber b) {
+        assert a != null : "Violation of: a is not null";
+        assert b != null : "Violation of: b is not null";
+
+        /*
+         * With r0 = a, r1 = b and r(i+1) = r(i-1) - q(i) * r(i), the
+         * coefficients s(i), t(i) of r(i) = a * s(i) + b * t(i) alternate in
+         * sign, so only their magnitudes need to be tracked:
+         * |s(i+1)| = |s(i-1)| + q(i) * |s(i)|, and likewise for t
+         */
+        NaturalNumber3 r0 = new NaturalNumber3(a);
+        NaturalNumber3 r1 = new NaturalNumber3(b);
+        NaturalNumber3 s0 = new NaturalNumber3(1);
+        NaturalNumber3 s1 = new NaturalNumber3();
+        NaturalNumber3 t0 = new NaturalNumber3();
+        NaturalNumber3 t1 = new NaturalNumber3(1);
+        int steps = 0;
+        while (!r1.isZero()) {
+            NaturalNumber remainder = r0.divide(r1);
+            NaturalNumber3 q = r0;
+            r0 = r1;
+            r1 = NaturalNumber3.asNaturalNumber3(remainder);
+
+            NaturalNumber3 s2 = new NaturalNumber3(s1);
+            s2.multiply(q);
+            s2.add(s0);
+            s0 = s1;
+            s1 = s2;
+
+            NaturalNumber3 t2 = new NaturalNumber3(t1);
+            t2.multiply(q);
+            t2.add(t0);
+            t0 = t1;
+            t1 = t2;
+
+            steps++;
+        }
+        /*
+         * s(i) has sign (-1)^i and t(i) has sign (-1)^(i+1)
+         */
+        boolean oddSteps = steps % 2 == 1;
+        return new Bezout(r0, s0, oddSteps && !s0.isZero(), t0,
+                !oddSteps && !t0.isZero());
+    }
+
+    /**
+     * Returns the inverse of a modulo m.
+     *
+     * @param a
+     *            the number to invert
+     * @param m
+     *            the modulus
+     * @return the inverse of a modulo m, with the same dynamic type as a
+     * @requires m > 1 and [greatest common divisor of a and m] = 1
+     * @ensures 0 < modInverse < m and (a * modInverse) mod m = 1
+     */
+    public static NaturalNumber modInverse(NaturalNumber a,
+            NaturalNumber m) {
+        assert a != null : "Violation of: a is not null";
+        assert m != null : "Violation of: m is not null";
+        NaturalNumber3 modulus = new NaturalNumber3(m);
+        assert modulus.bitLength() > 1 : "Violation of: m > 1";
+        NaturalNumber3 reduced = new NaturalNumber3(a);
+        reduced = NaturalNumber3.asNaturalNumber3(reduced.divide(modulus));
+
+        Bezout e = extendedGCD(reduced, modulus);
+        assert e.gcd().compareTo(new NaturalNumber3(1)) == 0 : ""
+                + "Violation of: [greatest common divisor of a and m] = 1";
+        NaturalNumber3 x = new NaturalNumber3(e.x());
+        if (e.isXNegative()) {
+            NaturalNumber3 positive = new NaturalNumber3(modulus);
+            positive.subtract(x);
+            x = positive;
+        }
+        NaturalNumber result = a.newInstance();
+        result.copyFrom(x);
+        return result;
+    }
+
+    /**
+     * Euclid's algorithm exactly as {@code CryptoUtilities.reduceToGCD}
+     * originally ran it, one recursive call per division step; kept as the
+     * baseline for the benchmark in main.
+     *
+     * @param n
+     *            one number
+     * @param m
+     *            the other number
+     * @updates n
+     * @clears m
+     * @ensures n = [greatest common divisor of #n and #m]
+     */
+    private static void recursiveGCD(NaturalNumber n, NaturalNumber m) {
+        if (m.isZero()) {
+            m.clear();
+        } else {
+            NaturalNumber remainder = n.divide(m);
+            recursiveGCD(m, remainder);
+            n.transferFrom(m);
+        }
+    }
+
+    /**
+     * Times {@code repetitions} runs of one GCD algorithm over the given
+     * operand pairs.
+     *
+     * @param algorithm
+     *            0 for recursive Euclid, 1 for binary, 2 for Lehmer
+     * @param left
+     *            first operands
+     * @param right
+     *            second operands
+     * @param results
+     *            receives the GCD of each pair
+     * @return the average time per GCD, in microseconds
+     */
+    private static double time(int algorithm, NaturalNumber[] left,
+            NaturalNumber[] right, NaturalNumber[] results) {
+        final double nanosPerMicro = 1000.0;
+        long start = System.nanoTime();
+        for (int i = 0; i < left.length; i++) {
+            NaturalNumber n = new NaturalNumber3(left[i]);
+            NaturalNumber m = new NaturalNumber3(right[i]);
+            if (algorithm == 0) {
+                recursiveGCD(n, m);
+            } else if (algorithm == 1) {
+                binaryGCD(n, m);
+            } else {
+                lehmerGCD(n, m);
+            }
+            results[i] = n;
+        }
+        return (System.nanoTime() - start) / nanosPerMicro / left.length;
+    }
+
+    /**
+     * Main method: checks that the algorithms agree and reports the average
+     * time per GCD of random operands of several sizes.
+     *
+     * @param args
+     *            the command line arguments
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+
+        final int[] sizes = { 64, 256, 1024, 2048, 4096 };
+        final int pairs = 200;
+        final int warmups = 3;
+        final long seed = 20_240_901L;
+        final String[] names = { "recursive Euclid", "binary (Stein)",
+            "Lehmer" };
+        RandomNaturalNumbers random = new RandomNaturalNumbers(seed);
+
+        for (int bits : sizes) {
+            NaturalNumber[] left = new NaturalNumber[pairs];
+            NaturalNumber[] right = new NaturalNumber[pairs];
+            for (int i = 0; i < pairs; i++) {
+                left[i] = random.randomBits(bits);
+                right[i] = random.randomBits(bits);
+            }
+            NaturalNumber[][] results = new NaturalNumber[names.length][pairs];
+            double[] micros = new double[names.length];
+            for (int w = 0; w <= warmups; w++) {
+                for (int a = 0; a < names.length; a++) {
+                    micros[a] = time(a, left, right, results[a]);
+                }
+            }
+            for (int a = 1; a < names.length; a++) {
+                for (int i = 0; i < pairs; i++) {
+                    if (!results[a][i].equals(results[0][i])) {
+                        out.println("*** " + names[a] + " disagrees on gcd("
+                                + left[i] + ", " + right[i] + ")");
+                    }
+                }
+            }
+            out.println(bits + "-bit operands:");
+            for (int a = 0; a < names.length; a++) {
+                out.println("  " + names[a] + ": "
+                        + Math.round(micros[a] * 10) / 10.0 + " us/op");
+            }
+        }
+
+        out.close();
+    }
+
+}
@@ -12,6 +12,23 @@ import components.simplewriter.SimpleWriter1L;
  */
 public final class NaturalNumberRoot {
 
+    /**
+     * Number of work space numbers {@link #root(NaturalNumber, int)} needs.
+     */
+    static final int SCRATCH_SIZE = 4;
+
+    /**
+     * Square roots of numbers of at most twice this many bits are computed in
+     * {@code long} arithmetic.
+     */
+    private static final int LONG_HALF_BITS = 31;
+
+    /**
+     * Benchmark methods: {@code bisectionRoot}, {@code narrowBisectionRoot}
+     * and {@code root}, resp.
+     */
+    private static final int BISECTION = 0, NARROW_BISECTION = 1, NEWTON = 2;
+
     /**
      * Private constructor so this utility class cannot be instantiated.
      */
@@ -33,6 +50,239 @@ public final class NaturalNumberRoot {
         assert n != null : "Violation of: n is  not null";
         assert r >= 2 : "Violation of: r >= 2";
 
+        NaturalNumber[] scratch = new NaturalNumber[SCRATCH_SIZE];
+        for (int i = 0; i < scratch.length; i++) {
+            scratch[i] = n.newInstance();
+        }
+        root(n, r, scratch);
+    }
+
+    /**
+     * Updates {@code n} to the {@code r}-th root of its incoming value, using
+     * the numbers in {@code scratch} as work space.
+     *
+     * @param n
+     *            the number whose root to compute
+     * @param r
+     *            root
+     * @param scratch
+     *            work space: {@code SCRATCH_SIZE} numbers of the same dynamic
+     *            type as n
+     * @updates n, scratch
+     * @requires r >= 2
+     * @ensures n ^ (r) <= #n < (n + 1) ^ (r)
+     */
+    static void root(NaturalNumber n, int r, NaturalNumber[] scratch) {
+        assert scratch.length >= SCRATCH_SIZE : ""
+                + "Violation of: |scratch| >= SCRATCH_SIZE";
+
+        /*
+         * Integer Newton's method, x' = ((r - 1) x + n / x^(r - 1)) / r. From
+         * any start at or above the root the iterates decrease strictly until
+         * they reach it, and then stop decreasing; each step roughly doubles
+         * the number of correct bits. Since n < 2^b for b = bitLength(n),
+         * 2^ceil(b / r) is such a start
+         */
+        int bits = NaturalNumberBits.bitLength(n);
+        if (bits > 1) {
+            NaturalNumber x = scratch[0];
+            NaturalNumber next = scratch[1];
+            NaturalNumber quotient = scratch[2];
+            NaturalNumber small = scratch[SCRATCH_SIZE - 1];
+            x.setFromInt(2);
+            x.power((bits + r - 1) / r);
+            boolean decreasing = true;
+            while (decreasing) {
+                next.copyFrom(x);
+                next.power(r - 1);
+                quotient.copyFrom(n);
+                quotient.divide(next);
+                next.copyFrom(x);
+                small.setFromInt(r - 1);
+                next.multiply(small);
+                next.add(quotient);
+                small.setFromInt(r);
+                next.divide(small);
+                decreasing = next.compareTo(x) < 0;
+                if (decreasing) {
+                    x.transferFrom(next);
+                }
+            }
+            n.transferFrom(x);
+        }
+    }
+
+    /**
+     * Updates {@code n} to its integer square root and returns the remainder,
+     * by Zimmermann's Karatsuba square root: n, of 2m - 1 or 2m bits, is
+     * split as {@code hi * 2^(2l) + a1 * 2^l + a0} with {@code l = m / 2}; the
+     * square root and remainder of {@code hi} come from a recursive call, and
+     * one division by twice that root gives the low bits of the root, off by
+     * at most one.
+     *
+     * @param n
+     *            the number whose square root to compute
+     * @param m
+     *            half the bit length of n, rounded up
+     * @return the remainder {@code #n - n^2}
+     * @updates n
+     * @requires [n has 2m - 1 or 2m bits]
+     * @ensures n ^ (2) <= #n < (n + 1) ^ (2)
+     */
+    private static NaturalNumber3 karatsubaSqrtRem(NaturalNumber3 n, int m) {
+        NaturalNumber3 remainder;
+        if (m <= LONG_HALF_BITS) {
+            long v = n.toLong();
+            long s = (long) Math.sqrt(v);
+            while (s * s > v) {
+                s--;
+            }
+            while ((s + 1) * (s + 1) <= v) {
+                s++;
+            }
+            n.setFromLong(s);
+            remainder = new NaturalNumber3();
+            remainder.setFromLong(v - s * s);
+        } else {
+            int low = m / 2;
+            NaturalNumber3 a0 = new NaturalNumber3(n);
+            a0.keepLowBits(low);
+            NaturalNumber3 a1 = new NaturalNumber3(n);
+            a1.shiftRight(low);
+            a1.keepLowBits(low);
+            n.shiftRight(2 * low);
+
+            /*
+             * n = s', the root of the top half, and q = (r' * 2^l + a1) / (2s')
+             * with remainder u; then s = s' * 2^l + q and the remainder is
+             * u * 2^l + a0 - q^2, which is corrected once if negative
+             */
+            NaturalNumber3 q = karatsubaSqrtRem(n, m - low);
+            q.shiftLeft(low);
+            q.add(a1);
+            NaturalNumber3 twiceRoot = new NaturalNumber3(n);
+            twiceRoot.shiftLeft(1);
+            remainder = NaturalNumber3.asNaturalNumber3(q.divide(twiceRoot));
+            n.shiftLeft(low);
+            n.add(q);
+            remainder.shiftLeft(low);
+            remainder.add(a0);
+            NaturalNumber3 qSquared = new NaturalNumber3(q);
+            qSquared.multiply(q);
+            if (remainder.compareTo(qSquared) < 0) {
+                remainder.add(n);
+                remainder.add(n);
+                remainder.decrement();
+                n.decrement();
+            }
+            remainder.subtract(qSquared);
+        }
+        return remainder;
+    }
+
+    /**
+     * Updates {@code n} to its integer square root and returns the remainder.
+     *
+     * @param n
+     *            the number whose square root to compute
+     * @return the remainder {@code #n - n^2}
+     * @updates n
+     * @ensures <pre>
+     * n ^ (2) <= #n < (n + 1) ^ (2)  and  sqrtRem = #n - n ^ (2)
+     * </pre>
+     */
+    public static NaturalNumber sqrtRem(NaturalNumber n) {
+        assert n != null : "Violation of: n is  not null";
+        NaturalNumber3 root = new NaturalNumber3(n);
+        NaturalNumber3 remainder = karatsubaSqrtRem(root,
+                (root.bitLength() + 1) / 2);
+        n.copyFrom(root);
+        NaturalNumber result = n.newInstance();
+        result.copyFrom(remainder);
+        return result;
+    }
+
+    /**
+     * Reports whether {@code n} is a perfect power, i.e., {@code n = y^k} for
+     * some y and some k >= 2. Only prime k need to be tried, and only up to
+     * log2(n), since {@code y >= 2} gives {@code k <= log2(n)}.
+     *
+     * @param n
+     *            the number to check
+     * @return true iff n is a perfect power
+     * @ensures isPerfectPower = [there exist y, k with k >= 2 and n = y^k]
+     */
+    public static boolean isPerfectPower(NaturalNumber n) {
+        assert n != null : "Violation of: n is  not null";
+        NaturalNumber3 x = new NaturalNumber3(n);
+        int bits = x.bitLength();
+        boolean perfect = bits <= 1
+                || sqrtRem(new NaturalNumber3(x)).isZero();
+        boolean[] composite = new boolean[bits];
+        for (int p = 3; !perfect && p < bits; p += 2) {
+            if (!composite[p]) {
+                for (long k = (long) p * p; k < bits; k += 2 * p) {
+                    composite[(int) k] = true;
+                }
+                NaturalNumber3 y = new NaturalNumber3(x);
+                root(y, p);
+                perfect = compareToPower(y, p, x) == 0;
+            }
+        }
+        return perfect;
+    }
+
+    /**
+     * Compares {@code x^r} with {@code bound}, multiplying out the power only
+     * as far as needed: the partial products never decrease, so as soon as
+     * one exceeds {@code bound} the answer is known.
+     *
+     * @param x
+     *            the base
+     * @param r
+     *            the exponent
+     * @param bound
+     *            the number to compare with
+     * @return a negative number, zero, or a positive number as {@code x^r} is
+     *         less than, equal to, or greater than {@code bound}
+     * @requires r >= 1
+     * @ensures <pre>
+     * compareToPower < 0 iff x^r < bound  and
+     * compareToPower = 0 iff x^r = bound
+     * </pre>
+     */
+    public static int compareToPower(NaturalNumber x, int r,
+            NaturalNumber bound) {
+        assert x != null : "Violation of: x is not null";
+        assert bound != null : "Violation of: bound is not null";
+        assert r >= 1 : "Violation of: r >= 1";
+        NaturalNumber power = x.newInstance();
+        power.copyFrom(x);
+        int comparison = power.compareTo(bound);
+        for (int i = 1; comparison <= 0 && i < r; i++) {
+            power.multiply(x);
+            comparison = power.compareTo(bound);
+        }
+        return comparison;
+    }
+
+    /**
+     * Updates {@code n} to the {@code r}-th root of its incoming value, by
+     * bisection on [0, n]. Kept as the baseline for the benchmark in
+     * {@code main}.
+     *
+     * @param n
+     *            the number whose root to compute
+     * @param r
+     *            root
+     * @updates n
+     * @requires r >= 2
+     * @ensures n ^ (r) <= #n < (n + 1) ^ (r)
+     */
+    private static void bisectionRoot(NaturalNumber n, int r) {
+        assert n != null : "Violation of: n is  not null";
+        assert r >= 2 : "Violation of: r >= 2";
+
         NaturalNumber low = new NaturalNumber2(0);
         NaturalNumber high = new NaturalNumber2(n);
         high.copyFrom(n);
@@ -68,8 +318,95 @@ public final class NaturalNumberRoot {
             low.copyFrom(one);
         }
         n.copyFrom(low);
-        // TODO - fill in body
+    }
 
+    /**
+     * Updates {@code n} to the {@code r}-th root of its incoming value, by
+     * bisection on a bracket narrowed by the bit length of n, stopping each
+     * power comparison early. Kept for the benchmark in {@code main}.
+     *
+     * @param n
+     *            the number whose root to compute
+     * @param r
+     *            root
+     * @updates n
+     * @requires r >= 2
+     * @ensures n ^ (r) <= #n < (n + 1) ^ (r)
+     */
+    private static void narrowBisectionRoot(NaturalNumber n, int r) {
+        assert n != null : "Violation of: n is  not null";
+        assert r >= 2 : "Violation of: r >= 2";
+
+        /*
+         * With b = bitLength(n), 2^(b - 1) <= n < 2^b, so the root lies in
+         * [2^((b - 1) / r), 2^(b / r + 1)) and the search starts from there
+         * rather than from [0, n]; the loop keeps low^r <= n < high^r
+         */
+        int bits = NaturalNumberBits.bitLength(n);
+        if (bits > 1) {
+            NaturalNumber two = n.newInstance();
+            two.setFromInt(2);
+            NaturalNumber low = n.newInstance();
+            low.copyFrom(two);
+            low.power((bits - 1) / r);
+            NaturalNumber high = n.newInstance();
+            high.copyFrom(two);
+            high.power(bits / r + 1);
+
+            NaturalNumber guess = n.newInstance();
+            guess.copyFrom(low);
+            guess.add(high);
+            guess.divide(two);
+            while (guess.compareTo(low) != 0) {
+                if (compareToPower(guess, r, n) <= 0) {
+                    low.copyFrom(guess);
+                } else {
+                    high.copyFrom(guess);
+                }
+                guess.copyFrom(low);
+                guess.add(high);
+                guess.divide(two);
+            }
+            n.transferFrom(low);
+        }
+    }
+
+    /**
+     * Returns the average time, in nanoseconds, of one pass of
+     * {@code bisectionRoot}, {@code narrowBisectionRoot} or {@code root} over
+     * a table of cases.
+     *
+     * @param method
+     *            {@code BISECTION}, {@code NARROW_BISECTION} or {@code NEWTON}
+     * @param numbers
+     *            the numbers whose roots to compute
+     * @param roots
+     *            the roots, one per number
+     * @param passes
+     *            number of passes over the table
+     * @return nanoseconds per pass
+     */
+    private static long timeTable(int method, String[] numbers,
+            int[] roots, int passes) {
+        NaturalNumber[] copies = new NaturalNumber[numbers.length];
+        long total = 0;
+        for (int pass = 0; pass < passes; pass++) {
+            for (int i = 0; i < numbers.length; i++) {
+                copies[i] = new NaturalNumber2(numbers[i]);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < numbers.length; i++) {
+                if (method == NEWTON) {
+                    root(copies[i], roots[i]);
+                } else if (method == NARROW_BISECTION) {
+                    narrowBisectionRoot(copies[i], roots[i]);
+                } else {
+                    bisectionRoot(copies[i], roots[i]);
+                }
+            }
+            total += System.nanoTime() - start;
+        }
+        return total / passes;
     }
 
     /**
@@ -110,6 +447,28 @@ public final class NaturalNumberRoot {
             }
         }
 
+        /*
+         * Compare the original bisection, the narrowed bisection and Newton
+         * iteration over the same table, after a warmup pass of each
+         */
+        final int passes = 20;
+        final double nanosPerMicro = 1e3;
+        timeTable(BISECTION, numbers, roots, 1);
+        timeTable(NARROW_BISECTION, numbers, roots, 1);
+        timeTable(NEWTON, numbers, roots, 1);
+        long bisection = timeTable(BISECTION, numbers, roots, passes);
+        long narrow = timeTable(NARROW_BISECTION, numbers, roots, passes);
+        long newton = timeTable(NEWTON, numbers, roots, passes);
+        out.println();
+        out.println("bisection:        " + Math.round(bisection / nanosPerMicro)
+                + " us per table");
+        out.println("narrow bisection: " + Math.round(narrow / nanosPerMicro)
+                + " us per table, "
+                + Math.round(10.0 * bisection / narrow) / 10.0 + "x faster");
+        out.println("Newton:           " + Math.round(newton / nanosPerMicro)
+                + " us per table, "
+                + Math.round(10.0 * bisection / newton) / 10.0 + "x faster");
+
         out.close();
     }
 
@@ -0,0 +1,165 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Parallel version of {@code CryptoUtilities.generateNextLikelyPrime}.
+ *
+ * <p>
+ * Candidates that survive the {@link SmallPrimeSieve} are gathered in
+ * batches, in increasing order. Each batch is split into interleaved strides,
+ * one per worker of a fork-join pool, and every worker runs
+ * {@code CryptoUtilities.isPrime2} on its stride from the smallest candidate
+ * up. The index of the smallest likely prime found so far is shared: a worker
+ * stops as soon as its next candidate lies beyond it, since that candidate can
+ * no longer be the answer. Workers below it carry on, so the result is the
+ * smallest likely prime at least {@code n}, exactly as in the serial search.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class ParallelPrimeSearch {
+
+    /**
+     * Candidates per worker in each batch; large enough to keep the workers
+     * busy, small enough that little work is wasted past the answer.
+     */
+    private static final int CANDIDATES_PER_WORKER = 4;
+
+    /**
+     * Index that stands for "no likely prime found yet".
+     */
+    private static final int NONE = Integer.MAX_VALUE;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ParallelPrimeSearch() {
+    }
+
+    /**
+     * Tests one stride of a batch: candidates {@code first}, {@code first +
+     * stride}, ... in increasing order.
+     */
+    private static final class StrideTask extends RecursiveAction {
+
+        /**
+         * Serialization version, required since RecursiveAction is
+         * Serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The batch of candidates, in increasing order.
+         */
+        private final NaturalNumber[] batch;
+
+        /**
+         * Index of the first candidate of this stride.
+         */
+        private final int first;
+
+        /**
+         * Distance between consecutive candidates of this stride.
+         */
+        private final int stride;
+
+        /**
+         * Smallest index of a likely prime found in the batch so far.
+         */
+        private final AtomicInteger best;
+
+        /**
+         * Constructor.
+         *
+         * @param batch
+         *            the candidates
+         * @param first
+         *            index of the first candidate of this stride
+         * @param stride
+         *            distance between consecutive candidates
+         * @param best
+         *            shared index of the smallest likely prime found
+         */
+        StrideTask(NaturalNumber[] batch, int first, int stride,
+                AtomicInteger best) {
+            this.batch = batch;
+            this.first = first;
+            this.stride = stride;
+            this.best = best;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = this.first; i < this.batch.length
+                    && i < this.best.get(); i += this.stride) {
+                if (CryptoUtilities.isPrime2(this.batch[i])) {
+                    this.best.accumulateAndGet(i, Math::min);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Generates a likely prime number at least as large as some given number,
+     * testing candidates on the workers of {@code pool}.
+     *
+     * @param n
+     *            minimum value of likely prime
+     * @param pool
+     *            the pool to run the tests on
+     * @updates n
+     * @requires n > 1
+     * @ensures <pre>
+     * n >= #n and [n is very likely a prime number] and
+     *   [no odd number in [#n, n) was reported likely prime]
+     * </pre>
+     */
+    public static void generateNextLikelyPrime(NaturalNumber n,
+            ForkJoinPool pool) {
+        assert n != null : "Violation of: n is not null";
+        assert pool != null : "Violation of: pool is not null";
+        NaturalNumber3 start = new NaturalNumber3(n);
+        assert start.bitLength() > 1 : "Violation of: n > 1";
+
+        if (!start.testBit(0)) {
+            start.increment();
+        }
+        SmallPrimeSieve sieve = new SmallPrimeSieve(start);
+        int workers = pool.getParallelism();
+        NaturalNumber[] batch = new NaturalNumber[workers
+                * CANDIDATES_PER_WORKER];
+        AtomicInteger best = new AtomicInteger(NONE);
+        while (best.get() == NONE) {
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = sieve.nextSurvivor();
+            }
+            StrideTask[] tasks = new StrideTask[workers];
+            for (int w = 0; w < workers; w++) {
+                tasks[w] = new StrideTask(batch, w, workers, best);
+            }
+            pool.invoke(
+                    ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        }
+        n.copyFrom(batch[best.get()]);
+    }
+
+    /**
+     * Generates a likely prime number at least as large as some given number,
+     * testing candidates on the common fork-join pool.
+     *
+     * @param n
+     *            minimum value of likely prime
+     * @updates n
+     * @requires n > 1
+     * @ensures n >= #n and [n is very likely a prime number]
+     */
+    public static void generateNextLikelyPrime(NaturalNumber n) {
+        generateNextLikelyPrime(n, ForkJoinPool.commonPool());
+    }
+
+}
@@ -0,0 +1,178 @@
+import java.security.SecureRandom;
+import java.util.SplittableRandom;
+
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Source of uniformly distributed random natural numbers.
+ *
+ * <p>
+ * A number below a bound {@code n} is drawn by filling whole 32-bit limbs,
+ * masking the top limb to the bit length of {@code n}, and rejecting draws
+ * that exceed {@code n}; each draw is accepted with probability more than 1/2,
+ * so a call costs O(limbs of n) on average. A generator is backed either by a
+ * {@code SplittableRandom}, which is fast but must not be shared between
+ * threads (use {@link #split()} or {@link #current()} to give each thread its
+ * own), or by a {@code SecureRandom}, which is slower but safe to share and
+ * suitable for key material.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class RandomNaturalNumbers {
+
+    /**
+     * Per-thread generators handed out by {@link #current()}.
+     */
+    private static final ThreadLocal<RandomNaturalNumbers> CURRENT =
+            ThreadLocal.withInitial(RandomNaturalNumbers::new);
+
+    /**
+     * Non-cryptographic source, or null if this is backed by {@code secure}.
+     */
+    private final SplittableRandom splittable;
+
+    /**
+     * Cryptographic source, or null if this is backed by {@code splittable}.
+     */
+    private final SecureRandom secure;
+
+    /**
+     * Constructor from the two possible sources, exactly one of which is not
+     * null.
+     *
+     * @param splittable
+     *            non-cryptographic source, or null
+     * @param secure
+     *            cryptographic source, or null
+     */
+    private RandomNaturalNumbers(SplittableRandom splittable,
+            SecureRandom secure) {
+        assert (splittable == null) != (secure == null) : ""
+                + "Violation of: exactly one source is given";
+        this.splittable = splittable;
+        this.secure = secure;
+    }
+
+    /**
+     * No-argument constructor: a fast, non-cryptographic generator with an
+     * unpredictable seed.
+     */
+    public RandomNaturalNumbers() {
+        this(new SplittableRandom(), null);
+    }
+
+    /**
+     * Constructor for a reproducible, non-cryptographic generator.
+     *
+     * @param seed
+     *            the seed
+     */
+    public RandomNaturalNumbers(long seed) {
+        this(new SplittableRandom(seed), null);
+    }
+
+    /**
+     * Returns a new generator backed by a {@code SecureRandom}; it may be
+     * shared between threads.
+     *
+     * @return a cryptographically strong generator
+     */
+    public static RandomNaturalNumbers secure() {
+        return new RandomNaturalNumbers(null, new SecureRandom());
+    }
+
+    /**
+     * Returns the calling thread's own non-cryptographic generator.
+     *
+     * @return the generator of the current thread
+     */
+    public static RandomNaturalNumbers current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Returns a generator to hand to another thread: an independent split of
+     * this one if it is non-cryptographic, or this one itself if it is backed
+     * by a {@code SecureRandom}.
+     *
+     * @return a generator for another thread
+     */
+    public RandomNaturalNumbers split() {
+        RandomNaturalNumbers result = this;
+        if (this.splittable != null) {
+            result = new RandomNaturalNumbers(this.splittable.split(), null);
+        }
+        return result;
+    }
+
+    /**
+     * Fills {@code limbs} with random bits.
+     *
+     * @param limbs
+     *            the array to fill
+     */
+    private void fill(int[] limbs) {
+        if (this.splittable != null) {
+            for (int i = 0; i < limbs.length; i++) {
+                limbs[i] = this.splittable.nextInt();
+            }
+        } else {
+            for (int i = 0; i < limbs.length; i++) {
+                limbs[i] = this.secure.nextInt();
+            }
+        }
+    }
+
+    /**
+     * Returns a random number uniformly distributed in the interval
+     * [0, 2^bits).
+     *
+     * @param bits
+     *            number of random bits
+     * @return random number in interval
+     * @requires bits >= 0
+     * @ensures <pre>
+     * randomBits = [a random number uniformly distributed in [0, 2^bits)]
+     * </pre>
+     */
+    public NaturalNumber randomBits(int bits) {
+        assert bits >= 0 : "Violation of: bits >= 0";
+        int[] limbs = new int[(bits + Integer.SIZE - 1) / Integer.SIZE];
+        this.fill(limbs);
+        int topBits = bits % Integer.SIZE;
+        if (topBits != 0) {
+            limbs[limbs.length - 1] &= (1 << topBits) - 1;
+        }
+        NaturalNumber3 result = new NaturalNumber3();
+        result.setLimbs(limbs, limbs.length);
+        return result;
+    }
+
+    /**
+     * Returns a random number uniformly distributed in the interval [0, n].
+     *
+     * @param n
+     *            top end of interval
+     * @return random number in interval
+     * @ensures <pre>
+     * uniform = [a random number uniformly distributed in [0, n]]
+     * </pre>
+     */
+    public NaturalNumber uniform(NaturalNumber n) {
+        assert n != null : "Violation of: n is not null";
+        NaturalNumber3 bound = NaturalNumber3.asNaturalNumber3(n);
+        int bits = bound.bitLength();
+        NaturalNumber result = this.randomBits(bits);
+        while (result.compareTo(bound) > 0) {
+            /*
+             * Rejection sampling over the full bit length of n: since
+             * 2^(bits - 1) <= n, each draw is accepted with probability more
+             * than 1/2
+             */
+            result = this.randomBits(bits);
+        }
+        return result;
+    }
+
+}
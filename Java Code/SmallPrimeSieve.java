@@ -0,0 +1,199 @@
+import components.naturalnumber.NaturalNumber;
+
+/**
+ * Incremental sieve that walks the odd numbers from a starting point and
+ * hands out only those with no factor among the first few thousand odd
+ * primes.
+ *
+ * <p>
+ * The residues of the starting point modulo each small prime are computed
+ * once. After that, each window of {@code WINDOW} consecutive odd candidates
+ * is sieved by striking out every {@code p}-th entry, and moving to the next
+ * window only updates the residues with integer arithmetic. Roughly nine in
+ * ten odd candidates of cryptographic size are struck out this way, so only
+ * the survivors need a probabilistic primality test.
+ * </p>
+ *
+ * @author Ryan McKinley
+ */
+public final class SmallPrimeSieve {
+
+    /**
+     * Number of odd primes used for sieving.
+     */
+    private static final int PRIME_COUNT = 2048;
+
+    /**
+     * Bound large enough that the first {@code PRIME_COUNT} odd primes lie
+     * below it.
+     */
+    private static final int PRIME_BOUND = 18_000;
+
+    /**
+     * Number of odd candidates in one window.
+     */
+    private static final int WINDOW = 4096;
+
+    /**
+     * The first {@code PRIME_COUNT} odd primes: 3, 5, 7, 11, ...
+     */
+    private static final int[] PRIMES = oddPrimes();
+
+    /**
+     * First candidate of the current window.
+     */
+    private final NaturalNumber3 windowStart;
+
+    /**
+     * {@code windowStart}, when it is small enough to be compared with the
+     * sieving primes, and -1 otherwise.
+     */
+    private long smallWindowStart;
+
+    /**
+     * {@code windowStart mod PRIMES[j]} for each j.
+     */
+    private final int[] residues;
+
+    /**
+     * {@code struck[i]} iff {@code windowStart + 2i} has a small prime factor
+     * other than itself.
+     */
+    private final boolean[] struck;
+
+    /**
+     * Index in the current window of the next candidate to look at.
+     */
+    private int next;
+
+    /**
+     * Constructor.
+     *
+     * @param start
+     *            first candidate
+     * @requires start > 1 and [start is odd]
+     */
+    public SmallPrimeSieve(NaturalNumber start) {
+        assert start != null : "Violation of: start is not null";
+        this.windowStart = new NaturalNumber3(start);
+        assert this.windowStart.testBit(0) : "Violation of: start is odd";
+        this.residues = new int[PRIMES.length];
+        for (int j = 0; j < PRIMES.length; j++) {
+            this.residues[j] = this.windowStart.remainderSmall(PRIMES[j]);
+        }
+        this.smallWindowStart = -1;
+        if (this.windowStart.canConvertToInt()) {
+            this.smallWindowStart = this.windowStart.toInt();
+        }
+        this.struck = new boolean[WINDOW];
+        this.sieveWindow();
+    }
+
+    /**
+     * Returns the first {@code PRIME_COUNT} odd primes, found with the sieve
+     * of Eratosthenes.
+     *
+     * @return the odd primes in increasing order
+     */
+    private static int[] oddPrimes() {
+        boolean[] composite = new boolean[PRIME_BOUND];
+        int[] primes = new int[PRIME_COUNT];
+        int count = 0;
+        for (int i = 3; count < PRIME_COUNT; i += 2) {
+            if (!composite[i]) {
+                primes[count] = i;
+                count++;
+                for (long k = (long) i * i; k < PRIME_BOUND; k += 2 * i) {
+                    composite[(int) k] = true;
+                }
+            }
+        }
+        return primes;
+    }
+
+    /**
+     * Returns the odd primes used for sieving, in increasing order.
+     *
+     * @return a copy of the sieving primes
+     */
+    static int[] sievingPrimes() {
+        return PRIMES.clone();
+    }
+
+    /**
+     * Strikes out the candidates of the current window that have a small
+     * prime factor.
+     */
+    private void sieveWindow() {
+        for (int i = 0; i < WINDOW; i++) {
+            this.struck[i] = false;
+        }
+        for (int j = 0; j < PRIMES.length; j++) {
+            int p = PRIMES[j];
+            /*
+             * windowStart + 2i = 0 (mod p) iff i = -r / 2 (mod p), and 1/2 is
+             * (p + 1) / 2 modulo an odd prime p
+             */
+            int r = this.residues[j];
+            int i = (int) ((long) ((p - r) % p) * ((p + 1) / 2) % p);
+            if (this.smallWindowStart >= 0
+                    && this.smallWindowStart + 2L * i == p) {
+                /*
+                 * The candidate is p itself, which is prime
+                 */
+                i += p;
+            }
+            for (; i < WINDOW; i += p) {
+                this.struck[i] = true;
+            }
+        }
+        this.next = 0;
+    }
+
+    /**
+     * Moves on to the next window of candidates.
+     */
+    private void advanceWindow() {
+        final int span = 2 * WINDOW;
+        NaturalNumber3 step = new NaturalNumber3(span);
+        this.windowStart.add(step);
+        if (this.smallWindowStart >= 0) {
+            this.smallWindowStart += span;
+            if (this.smallWindowStart > Integer.MAX_VALUE) {
+                this.smallWindowStart = -1;
+            }
+        }
+        for (int j = 0; j < PRIMES.length; j++) {
+            this.residues[j] = (this.residues[j] + span) % PRIMES[j];
+        }
+        this.sieveWindow();
+    }
+
+    /**
+     * Returns the next candidate, in increasing order, that has no small
+     * prime factor other than itself.
+     *
+     * @return the next surviving candidate
+     * @ensures <pre>
+     * [nextSurvivor is odd, at least the start given to the constructor, and
+     *   greater than every earlier result, and no odd number skipped since the
+     *   previous result is prime]
+     * </pre>
+     */
+    public NaturalNumber nextSurvivor() {
+        while (this.next < WINDOW && this.struck[this.next]) {
+            this.next++;
+        }
+        while (this.next == WINDOW) {
+            this.advanceWindow();
+            while (this.next < WINDOW && this.struck[this.next]) {
+                this.next++;
+            }
+        }
+        NaturalNumber3 result = new NaturalNumber3(this.windowStart);
+        result.add(new NaturalNumber3(2 * this.next));
+        this.next++;
+        return result;
+    }
+
+}